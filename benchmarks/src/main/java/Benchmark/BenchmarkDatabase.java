@@ -0,0 +1,82 @@
+package Benchmark;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.SchemaMigrator;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Points the application at a private in-memory database for a benchmark run, so that runs neither touch nor depend
+ * on ./h2. Pass -Ddb.url=... to benchmark against a file or server database instead.
+ */
+public class BenchmarkDatabase {
+
+    public static final String PASSWORD = "password";
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Must be called before anything touches Util.ConnectionUtil, which reads db.url once.
+     */
+    public static void init() {
+        if (System.getProperty("db.url") == null) {
+            System.setProperty("db.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        }
+        SchemaMigrator.migrate();
+    }
+
+    /**
+     * Empties the tables and fills them with accountCount accounts, named user0, user1... with password PASSWORD, and
+     * messageCount messages spread evenly across them.
+     */
+    public static Dataset seed(int accountCount, int messageCount) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DELETE FROM message");
+            stmt.executeUpdate("DELETE FROM account");
+        }
+
+        AccountDAO accountDAO = new AccountDAO();
+        int[] accountIds = new int[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accountIds[i] = accountDAO.createAccount(new Account("user" + i, PASSWORD)).getAccount_id();
+        }
+
+        MessageDAO messageDAO = new MessageDAO();
+        int[] messageIds = new int[messageCount];
+        List<Message> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < messageCount; i++) {
+            batch.add(new Message(accountIds[i % accountCount], "Seeded message number " + i + ".", 1669947792L + i));
+            if (batch.size() == INSERT_BATCH_SIZE || i == messageCount - 1) {
+                int first = i + 1 - batch.size();
+                for (Message created : messageDAO.createMessages(batch)) {
+                    messageIds[first++] = created.getMessage_id();
+                }
+                batch.clear();
+            }
+        }
+        return new Dataset(accountIds, messageIds);
+    }
+
+    /**
+     * The ids created by seed().
+     */
+    public static class Dataset {
+        public final int[] accountIds;
+        public final int[] messageIds;
+
+        Dataset(int[] accountIds, int[] messageIds) {
+            this.accountIds = accountIds;
+            this.messageIds = messageIds;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package Benchmark;
+
+import Model.Message;
+import Util.Json;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the ways the controller has bound JSON:
+ *  mapper    - the old path: the body copied into a String, then ObjectMapper.readValue / writeValueAsString
+ *  json      - Util.Json: pre-built readers and writers over the raw bytes
+ *  blackbird - the same readers and writers with generated accessors, as json.blackbird.enabled gives
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ObjectReader blackbirdMessageReader;
+    private ObjectWriter blackbirdMessageWriter;
+    private ObjectWriter blackbirdListWriter;
+
+    private Message message;
+    private byte[] messageBytes;
+
+    /**
+     * A listing as returned by GET /messages, for the list benchmarks only.
+     */
+    @State(Scope.Benchmark)
+    public static class Listing {
+        @Param({"10", "1000"})
+        public int listSize;
+
+        List<Message> messages;
+
+        @Setup
+        public void setUp() {
+            messages = new ArrayList<>(listSize);
+            for (int i = 0; i < listSize; i++) {
+                messages.add(new Message(i + 1, i % 10, "Message number " + i + " in a listing.", 1669947792L + i));
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper blackbird = new ObjectMapper().registerModule(new BlackbirdModule());
+        blackbirdMessageReader = blackbird.readerFor(Message.class);
+        blackbirdMessageWriter = blackbird.writerFor(Message.class);
+        blackbirdListWriter = blackbird.writerFor(new TypeReference<List<Message>>(){});
+
+        message = new Message(1, 1, "Checking in from the benchmark, nothing to see here.", 1669947792);
+        messageBytes = mapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public Message readMessageMapper() throws Exception {
+        return mapper.readValue(new String(messageBytes, StandardCharsets.UTF_8), Message.class);
+    }
+
+    @Benchmark
+    public Message readMessageJson() throws Exception {
+        return Json.readMessage(new ByteArrayInputStream(messageBytes));
+    }
+
+    @Benchmark
+    public Message readMessageBlackbird() throws Exception {
+        return blackbirdMessageReader.readValue(new ByteArrayInputStream(messageBytes));
+    }
+
+    @Benchmark
+    public byte[] writeMessageMapper() throws Exception {
+        return mapper.writeValueAsString(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeMessageJson() {
+        return Json.writeMessage(message);
+    }
+
+    @Benchmark
+    public byte[] writeMessageBlackbird() throws Exception {
+        return blackbirdMessageWriter.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] writeListMapper(Listing listing) throws Exception {
+        return mapper.writeValueAsString(listing.messages).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeListJson(Listing listing) {
+        return Json.writeMessages(listing.messages);
+    }
+
+    @Benchmark
+    public byte[] writeListBlackbird(Listing listing) throws Exception {
+        return blackbirdListWriter.writeValueAsBytes(listing.messages);
+    }
+}
@@ -0,0 +1,259 @@
+package Benchmark;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * An open-model load generator: requests are started at a constant arrival rate whether or not earlier ones have
+ * finished, the way independent users arrive, against the app running in-process on a random port. Each request's
+ * latency is measured from the time it was scheduled to start rather than the time it was actually sent, so a stall
+ * in the server (or in the generator) counts against every request that should have been sent during it. This is the
+ * coordinated omission correction; the uncorrected p99, measured from the actual send, is printed alongside to show
+ * how much it matters.
+ *
+ * Arguments: [requests/s, default 500] [seconds, default 30] [mix, default below] [warmup seconds, default 10]
+ * The mix is a comma separated list of route=weight over the nine API routes, eg getMessage=80,createMessage=20.
+ * Routes left out of the mix are not called. streamMessages, the unpaginated listing of every message, is not in the
+ * default mix, since each of its responses is the whole table.
+ *
+ * The database is seeded with 100 accounts and 10000 messages before the app starts.
+ */
+public class LoadGenerator {
+
+    private static final String DEFAULT_MIX = "register=2,login=8,createMessage=10,getMessages=5,getMessage=45,"
+            + "deleteMessage=2,updateMessage=8,getAccountMessages=20";
+    private static final int ACCOUNTS = 100;
+    private static final int MESSAGES = 10000;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String base;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final BenchmarkDatabase.Dataset dataset;
+    // Messages created by this run, for the deletes to use up
+    private final ConcurrentLinkedQueue<Integer> createdMessageIds = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger usernameSequence = new AtomicInteger();
+    private final String usernamePrefix = "load" + Long.toHexString(System.nanoTime()) + "-";
+
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+
+    LoadGenerator(String base, BenchmarkDatabase.Dataset dataset) {
+        this.base = base;
+        this.dataset = dataset;
+        addRoute("register", "POST /register", () -> post("/register",
+                "{\"username\":\"" + usernamePrefix + usernameSequence.incrementAndGet()
+                        + "\",\"password\":\"password\"}"));
+        addRoute("login", "POST /login", () -> post("/login",
+                "{\"username\":\"user" + random().nextInt(ACCOUNTS) + "\",\"password\":\""
+                        + BenchmarkDatabase.PASSWORD + "\"}"));
+        addRoute("createMessage", "POST /messages", () -> post("/messages",
+                "{\"posted_by\":" + randomAccountId() + ",\"message_text\":\"Posted by the load generator.\","
+                        + "\"time_posted_epoch\":1669947792}"));
+        addRoute("getMessages", "GET /messages", () -> get("/messages?limit=100"));
+        addRoute("streamMessages", "GET /messages (unpaginated)", () -> get("/messages"));
+        addRoute("getMessage", "GET /messages/{message_id}", () -> get("/messages/" + randomMessageId()));
+        addRoute("deleteMessage", "DELETE /messages/{message_id}", () -> {
+            // Delete what this run created, so the seeded messages the other routes read stay in place
+            Integer messageId = createdMessageIds.poll();
+            return request("/messages/" + (messageId == null ? Integer.MAX_VALUE : messageId)).DELETE();
+        });
+        addRoute("updateMessage", "PATCH /messages/{message_id}", () -> request("/messages/" + randomMessageId())
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"Edited by the load generator.\"}")));
+        addRoute("getAccountMessages", "GET /accounts/{account_id}/messages",
+                () -> get("/accounts/" + randomAccountId() + "/messages"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        String mix = args.length > 2 ? args[2] : DEFAULT_MIX;
+        int warmupSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        BenchmarkDatabase.init();
+        BenchmarkDatabase.Dataset dataset = BenchmarkDatabase.seed(ACCOUNTS, MESSAGES);
+        Javalin app = new SocialMediaController().startAPI().start(0);
+        try {
+            LoadGenerator generator = new LoadGenerator("http://localhost:" + app.port(), dataset);
+            List<Route> weighted = generator.parseMix(mix);
+            if (warmupSeconds > 0) {
+                generator.run(weighted, rate, warmupSeconds);
+                generator.reset();
+            }
+            long elapsedNanos = generator.run(weighted, rate, seconds);
+            generator.report(rate, elapsedNanos);
+        } finally {
+            app.stop();
+        }
+    }
+
+    /**
+     * Sends requests at the given rate for the given time, then waits for the last of them.
+     * @return nanoseconds from the first scheduled request to the last response
+     */
+    long run(List<Route> weighted, int rate, int seconds) {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * seconds;
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long scheduled = start + i * intervalNanos;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Route route = weighted.get(random().nextInt(weighted.size()));
+            inFlight.add(route.send(scheduled));
+            if (inFlight.size() >= 10000) {
+                inFlight.removeIf(CompletableFuture::isDone);
+            }
+        }
+        CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0])).join();
+        return System.nanoTime() - start;
+    }
+
+    void reset() {
+        for (Route route : routes.values()) {
+            route.reset();
+        }
+    }
+
+    void report(int rate, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("target %d req/s over %.1f s%n", rate, seconds);
+        System.out.printf("%-36s %8s %7s %9s %9s %9s %9s %9s %13s%n", "route", "requests", "errors", "req/s",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms", "uncorr p99 ms");
+        Histogram all = new Histogram(3);
+        long requests = 0;
+        long errors = 0;
+        for (Route route : routes.values()) {
+            long count = route.latency.getTotalCount();
+            if (count == 0) {
+                continue;
+            }
+            all.add(route.latency);
+            requests += count;
+            errors += route.errors.sum();
+            print(route.name, route.latency, route.errors.sum(), count / seconds,
+                    route.uncorrected.getValueAtPercentile(99));
+        }
+        print("all", all, errors, requests / seconds, -1);
+    }
+
+    private static void print(String name, Histogram latency, long errors, double throughput, long uncorrectedP99) {
+        System.out.printf("%-36s %8d %7d %9.0f %9.2f %9.2f %9.2f %9.2f %13s%n", name, latency.getTotalCount(), errors,
+                throughput, millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)),
+                millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()),
+                uncorrectedP99 < 0 ? "" : String.format("%.2f", millis(uncorrectedP99)));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * @return the routes repeated by weight, to pick from uniformly
+     */
+    List<Route> parseMix(String mix) {
+        List<Route> weighted = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] nameWeight = entry.trim().split("=");
+            Route route = routes.get(nameWeight[0]);
+            if (route == null || nameWeight.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry " + entry + "; routes are " + routes.keySet());
+            }
+            for (int i = Integer.parseInt(nameWeight[1]); i > 0; i--) {
+                weighted.add(route);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no weight.");
+        }
+        return weighted;
+    }
+
+    private void addRoute(String key, String name, RequestFactory factory) {
+        routes.put(key, new Route(name, factory));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return request(path).GET();
+    }
+
+    private HttpRequest.Builder post(String path, String body) {
+        return request(path).POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private int randomAccountId() {
+        return dataset.accountIds[random().nextInt(dataset.accountIds.length)];
+    }
+
+    private int randomMessageId() {
+        return dataset.messageIds[random().nextInt(dataset.messageIds.length)];
+    }
+
+    private static ThreadLocalRandom random() {
+        return ThreadLocalRandom.current();
+    }
+
+    private interface RequestFactory {
+        HttpRequest.Builder create();
+    }
+
+    private class Route {
+        final String name;
+        final RequestFactory factory;
+        // Nanoseconds from the scheduled start, and from the actual send
+        final Histogram latency = new ConcurrentHistogram(3);
+        final Histogram uncorrected = new ConcurrentHistogram(3);
+        final LongAdder errors = new LongAdder();
+
+        Route(String name, RequestFactory factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        CompletableFuture<?> send(long scheduled) {
+            long sent = System.nanoTime();
+            return client.sendAsync(factory.create().build(), HttpResponse.BodyHandlers.ofString())
+                    .handle((response, error) -> {
+                        long now = System.nanoTime();
+                        latency.recordValue(now - scheduled);
+                        uncorrected.recordValue(now - sent);
+                        if (error != null || response.statusCode() != 200) {
+                            errors.increment();
+                        } else if (this == routes.get("createMessage")) {
+                            createdMessageIds.add(Integer.parseInt(
+                                    response.body().replaceAll(".*\"message_id\":(\\d+).*", "$1")));
+                        }
+                        return null;
+                    });
+        }
+
+        void reset() {
+            latency.reset();
+            uncorrected.reset();
+            errors.reset();
+        }
+    }
+}
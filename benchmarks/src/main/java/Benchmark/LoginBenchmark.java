@@ -0,0 +1,66 @@
+package Benchmark;
+
+import DAO.AccountDAO;
+import Model.Account;
+import Service.AccountService;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times login against 10000 accounts, straight through AccountDAO and through AccountService's validation, for both
+ * a correct and a wrong password.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginBenchmark {
+
+    private static final int ACCOUNTS = 10000;
+
+    private final AccountDAO accountDAO = new AccountDAO();
+    private AccountService accountService;
+
+    @Setup
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.init();
+        BenchmarkDatabase.seed(ACCOUNTS, 0);
+        accountService = new AccountService(accountDAO);
+    }
+
+    @Benchmark
+    public Account loginDAO() throws SQLException {
+        return accountDAO.login(randomUsername(), BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public Account loginService() throws SQLException {
+        return accountService.login(randomUsername(), BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public Object loginServiceWrongPassword() throws SQLException {
+        try {
+            return accountService.login(randomUsername(), "wrong password");
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    private static String randomUsername() {
+        return "user" + ThreadLocalRandom.current().nextInt(ACCOUNTS);
+    }
+}
@@ -0,0 +1,93 @@
+package Benchmark;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times each MessageDAO query on its own, against a message table seeded with tableSize rows spread over 100
+ * accounts. Every call goes to the database; there is no cache at this layer. Messages inserted by createMessage are
+ * deleted before each iteration, so the table stays at tableSize.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDAOBenchmark {
+
+    private static final int ACCOUNTS = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    private final MessageDAO messageDAO = new MessageDAO();
+    private BenchmarkDatabase.Dataset dataset;
+    private int lastSeededMessageId;
+
+    @Setup
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.init();
+        dataset = BenchmarkDatabase.seed(ACCOUNTS, tableSize);
+        lastSeededMessageId = dataset.messageIds[dataset.messageIds.length - 1];
+    }
+
+    @Setup(Level.Iteration)
+    public void removeCreatedMessages() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DELETE FROM message WHERE message_id > " + lastSeededMessageId);
+        }
+    }
+
+    @Benchmark
+    public Message createMessage() throws SQLException {
+        return messageDAO.createMessage(new Message(randomAccountId(), "Posted from the benchmark.", 1669947792L));
+    }
+
+    @Benchmark
+    public Message getMessageById() throws SQLException {
+        return messageDAO.getMessageById(randomMessageId());
+    }
+
+    @Benchmark
+    public List<Message> getAllMessages() throws SQLException {
+        return messageDAO.getAllMessages();
+    }
+
+    @Benchmark
+    public List<Message> getMessagesByAccountId() throws SQLException {
+        return messageDAO.getMessagesByAccountId(randomAccountId());
+    }
+
+    @Benchmark
+    public Message updateMessageText() throws SQLException {
+        return messageDAO.updateMessageTextReturning(randomMessageId(), "Edited by the benchmark.");
+    }
+
+    private int randomAccountId() {
+        return dataset.accountIds[ThreadLocalRandom.current().nextInt(dataset.accountIds.length)];
+    }
+
+    private int randomMessageId() {
+        return dataset.messageIds[ThreadLocalRandom.current().nextInt(dataset.messageIds.length)];
+    }
+}
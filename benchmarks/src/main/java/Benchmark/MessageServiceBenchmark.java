@@ -0,0 +1,99 @@
+package Benchmark;
+
+import Model.Message;
+import Model.MessagePage;
+import Service.MessageService;
+import Util.ConnectionUtil;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times MessageService, with its validation and its message and timeline caches, over 10000 messages spread across
+ * 100 accounts. Compare with MessageDAOBenchmark to see what the service adds or saves on top of the queries. The
+ * caches are warm after the first warmup iteration, so getMessageById and getMessagesByUserId measure mostly cache hits.
+ * getMessagesByUserIdPage only uses timelines that are already cached, and nothing else in its fork loads them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageServiceBenchmark {
+
+    private static final int ACCOUNTS = 100;
+    private static final int MESSAGES = 10000;
+
+    private MessageService messageService;
+    private BenchmarkDatabase.Dataset dataset;
+    private int lastSeededMessageId;
+
+    @Setup
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.init();
+        dataset = BenchmarkDatabase.seed(ACCOUNTS, MESSAGES);
+        lastSeededMessageId = dataset.messageIds[dataset.messageIds.length - 1];
+        messageService = new MessageService();
+    }
+
+    @Setup(Level.Iteration)
+    public void removeCreatedMessages() throws SQLException {
+        // Deleted behind the service's back; the created messages are never read, so its caches do not notice
+        try (Connection connection = ConnectionUtil.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DELETE FROM message WHERE message_id > " + lastSeededMessageId);
+        }
+    }
+
+    @Benchmark
+    public Message createMessage() throws SQLException {
+        return messageService.createMessage(new Message(randomAccountId(), "Posted from the benchmark.", 1669947792L));
+    }
+
+    @Benchmark
+    public Message getMessageById() throws SQLException {
+        return messageService.getMessageById(randomMessageId());
+    }
+
+    @Benchmark
+    public List<Message> getAllMessages() throws SQLException {
+        return messageService.getAllMessages();
+    }
+
+    @Benchmark
+    public List<Message> getMessagesByUserId() throws SQLException {
+        return messageService.getMessagesByUserId(randomAccountId());
+    }
+
+    @Benchmark
+    public MessagePage getMessagesByUserIdPage() throws SQLException {
+        return messageService.getMessagesByUserIdPage(randomAccountId(), 0, 50);
+    }
+
+    @Benchmark
+    public Message updateMessageText() throws SQLException {
+        return messageService.updateMessageText(randomMessageId(), "Edited by the benchmark.");
+    }
+
+    private int randomAccountId() {
+        return dataset.accountIds[ThreadLocalRandom.current().nextInt(dataset.accountIds.length)];
+    }
+
+    private int randomMessageId() {
+        return dataset.messageIds[ThreadLocalRandom.current().nextInt(dataset.messageIds.length)];
+    }
+}
@@ -0,0 +1,122 @@
+package Benchmark;
+
+import Model.Message;
+import Service.MessageSearchIndex;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times MessageSearchIndex queries over synthetic messages of 8 to 24 words, drawn with a Zipf distribution from a
+ * 20000 word vocabulary so that, as in real text, a few words occur in most messages and most words in few. The index
+ * is filled directly rather than from the database, so that a million messages can be set up in seconds.
+ *
+ * Queries fetch the first page of 20: a rare word (about 300 matches at a million messages), the most common one
+ * (three quarters of all messages), two fairly common words together, and a two letter prefix spanning about 30
+ * words, one of them common. update re-indexes a random message with new text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SearchBenchmark {
+
+    private static final int VOCABULARY = 20000;
+    private static final int PAGE = 20;
+
+    @Param({"100000", "1000000"})
+    public int messageCount;
+
+    private MessageSearchIndex index;
+    private double[] cumulative;
+    private String rareTerm;
+    private String commonTerm;
+    private String twoTerms;
+    private String prefix;
+
+    @Setup
+    public void setUp() {
+        cumulative = new double[VOCABULARY];
+        double sum = 0;
+        for (int rank = 0; rank < VOCABULARY; rank++) {
+            sum += 1.0 / (rank + 1);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < VOCABULARY; rank++) {
+            cumulative[rank] /= sum;
+        }
+
+        index = new MessageSearchIndex(1000);
+        Random random = new Random(42);
+        for (int id = 1; id <= messageCount; id++) {
+            index.add(new Message(id, 1, randomText(random), 1669947792));
+        }
+
+        rareTerm = word(5000);
+        commonTerm = word(0);
+        twoTerms = word(10) + " " + word(200);
+        prefix = word(3).substring(0, 2) + "*";
+    }
+
+    @Benchmark
+    public MessageSearchIndex.Hits rareTerm() {
+        return index.search(rareTerm, 0, PAGE);
+    }
+
+    @Benchmark
+    public MessageSearchIndex.Hits commonTerm() {
+        return index.search(commonTerm, 0, PAGE);
+    }
+
+    @Benchmark
+    public MessageSearchIndex.Hits twoTerms() {
+        return index.search(twoTerms, 0, PAGE);
+    }
+
+    @Benchmark
+    public MessageSearchIndex.Hits prefix() {
+        return index.search(prefix, 0, PAGE);
+    }
+
+    @Benchmark
+    public void update() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        index.add(new Message(1 + random.nextInt(messageCount), 1, randomText(random), 1669947792));
+    }
+
+    private String randomText(Random random) {
+        int words = 8 + random.nextInt(17);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+            text.append(i == 0 ? "" : " ").append(word(rank < 0 ? -rank - 1 : rank));
+        }
+        return text.toString();
+    }
+
+    // A distinct four letter word per rank, scattered so that neighbouring ranks do not share a prefix. 7919 is
+    // coprime with 26, so multiplying by it permutes the 26^4 possible words.
+    private static String word(int rank) {
+        int code = (int) ((rank * 7919L) % (26 * 26 * 26 * 26));
+        char[] letters = new char[4];
+        for (int i = 3; i >= 0; i--) {
+            letters[i] = (char) ('a' + code % 26);
+            code /= 26;
+        }
+        return new String(letters);
+    }
+}
@@ -0,0 +1,190 @@
+package Benchmark;
+
+import Controller.SocialMediaController;
+import io.javalin.Javalin;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the same closed-loop workload against the app under several server.* transport settings and prints the
+ * latency percentiles for each, to show what each knob does to the tail. Each profile changes one setting from the
+ * defaults in application.properties.
+ *
+ * The workload is a fixed number of clients, each sending its next request as soon as the last one returns: 90%
+ * GET /messages/{message_id}, 10% GET /accounts/{account_id}/messages?limit=50.
+ *
+ * Arguments: [clients, default 64] [seconds per profile, default 10] [profiles, default all]
+ */
+public class TransportLoadTest {
+
+    private static final Map<String, String[]> PROFILES = new LinkedHashMap<>();
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    private static int[] messageIds;
+    private static String timelinePath;
+
+    static {
+        PROFILES.put("baseline", new String[] {});
+        PROFILES.put("h2c", new String[] {"client.http2=true"});
+        PROFILES.put("no-h2c", new String[] {"server.http2.enabled=false", "client.http2=true"});
+        PROFILES.put("threads-16", new String[] {"server.threads.max=16"});
+        PROFILES.put("threads-16-queue-32", new String[] {"server.threads.max=16", "server.threads.queueSize=32"});
+        PROFILES.put("selectors-1", new String[] {"server.acceptors=1", "server.selectors=1"});
+        PROFILES.put("output-buffer-1k", new String[] {"server.outputBufferSize=1024"});
+        PROFILES.put("idle-timeout-5ms", new String[] {"server.idleTimeoutMillis=5"});
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        List<String> profiles = args.length > 2 ? Arrays.asList(args[2].split(",")) : new ArrayList<>(PROFILES.keySet());
+
+        BenchmarkDatabase.init();
+        // One unreported pass so the first profile is not measured against a cold JIT
+        run("warmup", PROFILES.get("baseline"), clients, 3 * seconds, false);
+        System.out.printf("%-20s %10s %8s %9s %9s %9s %9s%n",
+                "profile", "requests", "errors", "req/s", "p50 us", "p99 us", "max us");
+        for (String profile : profiles) {
+            if (!PROFILES.containsKey(profile)) {
+                throw new IllegalArgumentException("Unknown profile " + profile + "; choose from " + PROFILES.keySet());
+            }
+            run(profile, PROFILES.get(profile), clients, seconds, true);
+        }
+    }
+
+    private static void run(String profile, String[] settings, int clients, int seconds, boolean report)
+            throws Exception {
+        boolean http2Client = false;
+        List<String> keys = new ArrayList<>();
+        for (String setting : settings) {
+            String[] keyValue = setting.split("=", 2);
+            if (keyValue[0].equals("client.http2")) {
+                http2Client = Boolean.parseBoolean(keyValue[1]);
+            } else {
+                System.setProperty(keyValue[0], keyValue[1]);
+                keys.add(keyValue[0]);
+            }
+        }
+
+        Javalin app = new SocialMediaController().startAPI().start(0);
+        ExecutorService workers = Executors.newFixedThreadPool(clients);
+        try {
+            String base = "http://localhost:" + app.port();
+            HttpClient client = HttpClient.newBuilder()
+                    .version(http2Client ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                    .build();
+            // Seed under the warmup's default settings, since the data outlives each app in the in-memory database
+            if (messageIds == null) {
+                messageIds = seed(client, base);
+            }
+
+            // Warm up the JIT, the caches and the connections before measuring
+            drive(workers, client, base, messageIds, clients, Math.max(2, seconds / 3) * 1000L);
+            List<long[]> results = drive(workers, client, base, messageIds, clients, seconds * 1000L);
+
+            long[] latencies = results.stream().flatMapToLong(r -> Arrays.stream(r, 1, (int) r[0] + 1)).toArray();
+            long errors = results.stream().mapToLong(r -> r[r.length - 1]).sum();
+            Arrays.sort(latencies);
+            if (!report) {
+                return;
+            }
+            System.out.printf("%-20s %10d %8d %9.0f %9d %9d %9d%n", profile, latencies.length, errors,
+                    latencies.length / (double) seconds, percentile(latencies, 0.50) / 1000,
+                    percentile(latencies, 0.99) / 1000, latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1000);
+        } finally {
+            workers.shutdownNow();
+            app.stop();
+            for (String key : keys) {
+                System.clearProperty(key);
+            }
+        }
+    }
+
+    // Registers an account with a few hundred messages
+    private static int[] seed(HttpClient client, String base) throws Exception {
+        String username = "loadtest-" + System.nanoTime();
+        HttpResponse<String> account = client.send(HttpRequest.newBuilder(URI.create(base + "/register")).timeout(REQUEST_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"username\":\"" + username + "\",\"password\":\"password\"}")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        int accountId = Integer.parseInt(account.body().replaceAll(".*\"account_id\":(\\d+).*", "$1"));
+        timelinePath = "/accounts/" + accountId + "/messages?limit=50";
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < 300; i++) {
+            batch.append(i == 0 ? "" : ",").append("{\"posted_by\":").append(accountId)
+                    .append(",\"message_text\":\"load test message ").append(i)
+                    .append("\",\"time_posted_epoch\":1669947792}");
+        }
+        HttpResponse<String> created = client.send(HttpRequest.newBuilder(URI.create(base + "/messages/batch")).timeout(REQUEST_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.ofString(batch.append("]").toString())).build(),
+                HttpResponse.BodyHandlers.ofString());
+        return Pattern.compile("\"message_id\":(\\d+)").matcher(created.body()).results()
+                .mapToInt(m -> Integer.parseInt(m.group(1))).toArray();
+    }
+
+    /**
+     * @return per client: [count, latency nanos..., errors]
+     */
+    private static List<long[]> drive(ExecutorService workers, HttpClient client, String base, int[] messageIds,
+            int clients, long durationMillis) throws Exception {
+        long deadline = System.nanoTime() + durationMillis * 1_000_000;
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            futures.add(workers.submit(() -> {
+                long[] samples = new long[1 << 16];
+                int count = 0;
+                long errors = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    int messageId = messageIds[random.nextInt(messageIds.length)];
+                    String path = random.nextInt(10) == 0 ? timelinePath : "/messages/" + messageId;
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(
+                                HttpRequest.newBuilder(URI.create(base + path)).timeout(REQUEST_TIMEOUT).build(),
+                                HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() != 200) {
+                            errors++;
+                        }
+                    } catch (IOException e) {
+                        errors++;
+                    }
+                    if (count + 2 >= samples.length) {
+                        samples = Arrays.copyOf(samples, samples.length * 2);
+                    }
+                    samples[++count] = System.nanoTime() - start;
+                }
+                samples[0] = count;
+                samples[count + 1] = errors;
+                return Arrays.copyOf(samples, count + 2);
+            }));
+        }
+        List<long[]> results = new ArrayList<>();
+        for (Future<long[]> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,86 @@
+package Benchmark;
+
+import Controller.SocialMediaController;
+import io.javalin.util.LoomUtil;
+import io.javalin.Javalin;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shows how many requests can be blocked in a handler at once under each server.threads mode. Every request goes to
+ * an extra route that blocks for a fixed time, standing in for a slow query. With platform threads the number of
+ * requests in the handler at once stops at the size of Jetty's pool; with virtual threads it reaches the number sent.
+ *
+ * Arguments: [requests, default 2000] [blockMillis, default 1000] [modes, default platform,virtual]
+ * Virtual threads need JDK 21 or later; on older JDKs that mode falls back to platform threads and reports so.
+ */
+public class VirtualThreadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long blockMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        String[] modes = (args.length > 2 ? args[2] : "platform,virtual").split(",");
+
+        BenchmarkDatabase.init();
+        System.out.printf("%-9s %9s %12s %12s %14s%n", "mode", "requests", "elapsed ms", "requests/s", "peak blocked");
+        for (String mode : modes) {
+            run(mode, requests, blockMillis);
+        }
+    }
+
+    private static void run(String mode, int requests, long blockMillis) throws Exception {
+        System.setProperty("server.threads", mode);
+        AtomicInteger blocked = new AtomicInteger();
+        AtomicInteger peakBlocked = new AtomicInteger();
+
+        Javalin app = new SocialMediaController().startAPI();
+        app.get("/benchmark/blocking", ctx -> {
+            peakBlocked.accumulateAndGet(blocked.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(blockMillis);
+            } finally {
+                blocked.decrementAndGet();
+            }
+            ctx.result("");
+        });
+        app.start(0);
+        try {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:" + app.port() + "/benchmark/blocking"))
+                    .build();
+
+            long start = System.nanoTime();
+            List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(requests);
+            for (int i = 0; i < requests; i++) {
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+            }
+            int failed = 0;
+            for (CompletableFuture<HttpResponse<Void>> response : responses) {
+                try {
+                    if (response.join().statusCode() != 200) {
+                        failed++;
+                    }
+                } catch (RuntimeException e) {
+                    failed++;
+                }
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            String notes = failed > 0 ? "  (" + failed + " failed)" : "";
+            if (!"platform".equals(mode) && !LoomUtil.INSTANCE.getLoomAvailable()) {
+                notes += "  (no virtual threads on this JDK; ran on platform threads)";
+            }
+            System.out.printf("%-9s %9d %12d %12.0f %14d%s%n", mode, requests, elapsedMillis,
+                    requests * 1000.0 / Math.max(1, elapsedMillis), peakBlocked.get(), notes);
+        } finally {
+            app.stop();
+        }
+    }
+}
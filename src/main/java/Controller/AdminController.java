@@ -0,0 +1,102 @@
+package Controller;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.NotFoundResponse;
+import io.javalin.http.UnauthorizedResponse;
+import Service.AccountService;
+import Service.MessageService;
+import Service.SessionService;
+import Util.Config;
+import Util.ConnectionUtil;
+import Util.QueryTimer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operational endpoints for sizing and troubleshooting the service. These are not part of the public API: they are
+ * off unless admin.token is set, and then every request must present that token in the X-Admin-Token header.
+ */
+public class AdminController {
+
+    private static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+
+    private final AccountService accountService;
+    private final MessageService messageService;
+    private final SessionService sessionService;
+    // Null when admin.token is blank, which disables the endpoints
+    private final byte[] adminToken;
+
+    public AdminController(AccountService accountService, MessageService messageService,
+            SessionService sessionService) {
+        this.accountService = accountService;
+        this.messageService = messageService;
+        this.sessionService = sessionService;
+        String token = Config.getString("admin.token", "");
+        this.adminToken = token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Registers the admin endpoints on an app built by SocialMediaController.
+     * @param app the Javalin app to add the routes to.
+     */
+    public void addRoutes(Javalin app) {
+        app.before("/admin/*", this::checkAdminToken);
+
+        // Live counters for the connection pool and other shared resources
+        app.get("/admin/stats", this::getStats);
+
+        // Execution counts and timings for every SQL statement, the most total time first
+        app.get("/admin/queries", this::getQueries);
+        app.delete("/admin/queries", this::resetQueries);
+    }
+
+    private void checkAdminToken(Context ctx) {
+        if (adminToken == null) {
+            // Answer as if the routes did not exist
+            throw new NotFoundResponse("");
+        }
+        String presented = ctx.header(ADMIN_TOKEN_HEADER);
+        // Constant time, so response timing does not reveal how much of a guess was right
+        if (presented == null || !MessageDigest.isEqual(presented.getBytes(StandardCharsets.UTF_8), adminToken)) {
+            throw new UnauthorizedResponse("");
+        }
+    }
+
+    private void getStats(Context ctx) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pool", ConnectionUtil.getPoolStats());
+        stats.put("databaseExecutor", ConnectionUtil.getDatabaseExecutor().getMetrics());
+        if (messageService.getGroupCommitStats() != null) {
+            stats.put("groupCommit", messageService.getGroupCommitStats());
+        }
+        stats.put("messageCache", messageService.getMessageCacheMetrics());
+        stats.put("timelineCache", messageService.getTimelineCacheMetrics());
+        if (messageService.getSearchIndexMetrics() != null) {
+            stats.put("searchIndex", messageService.getSearchIndexMetrics());
+        }
+        stats.put("accountIdIndex", accountService.getAccountIdIndexMetrics());
+        stats.put("usernameFilter", accountService.getUsernameFilterMetrics());
+        stats.put("sessions", sessionService.getMetrics());
+        ctx.json(stats);
+    }
+
+    private void getQueries(Context ctx) {
+        QueryTimer queryTimer = ConnectionUtil.getQueryTimer();
+        if (queryTimer == null) {
+            ctx.status(404).result("Query statistics are disabled (db.queryStats.enabled).");
+            return;
+        }
+        ctx.json(queryTimer.getStats());
+    }
+
+    private void resetQueries(Context ctx) {
+        QueryTimer queryTimer = ConnectionUtil.getQueryTimer();
+        if (queryTimer != null) {
+            queryTimer.reset();
+        }
+        ctx.status(204);
+    }
+}
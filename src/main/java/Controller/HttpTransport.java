@@ -0,0 +1,109 @@
+package Controller;
+
+import io.javalin.util.ConcurrencyUtil;
+import io.javalin.util.LoomThreadPool;
+import io.javalin.util.LoomUtil;
+import Util.Config;
+import org.eclipse.jetty.http.UriCompliance;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.LowResourceMonitor;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Builds the Jetty server Javalin runs on from the server.* settings in application.properties, in place of Javalin's
+ * fixed defaults. Covers the thread pool (size and queue), the connector (acceptor and selector threads, accept
+ * backlog, keep-alive idle timeout), HTTP buffer and header sizes, and cleartext HTTP/2 (h2c), which lets a client
+ * multiplex many requests over one connection instead of opening one connection per in-flight request.
+ *
+ * The port still comes from app.start(port): Javalin adds its default connector for that port, and it is swapped
+ * for a configured one just before the server starts.
+ */
+public class HttpTransport {
+
+    private final int minThreads = Config.getInt("server.threads.min", 8);
+    private final int maxThreads = Config.getInt("server.threads.max", 250);
+    private final int threadQueueSize = Config.getInt("server.threads.queueSize", -1);
+    private final int threadIdleTimeoutMillis = Config.getInt("server.threads.idleTimeoutMillis", 60000);
+    private final int acceptors = Config.getInt("server.acceptors", -1);
+    private final int selectors = Config.getInt("server.selectors", -1);
+    private final int acceptQueueSize = Config.getInt("server.acceptQueueSize", 0);
+    private final long idleTimeoutMillis = Config.getLong("server.idleTimeoutMillis", 30000);
+    private final int requestHeaderSize = Config.getInt("server.requestHeaderSize", 8192);
+    private final int responseHeaderSize = Config.getInt("server.responseHeaderSize", 8192);
+    private final int outputBufferSize = Config.getInt("server.outputBufferSize", 32768);
+    private final boolean http2Enabled = Config.getBoolean("server.http2.enabled", true);
+
+    /**
+     * @return a server for Javalin's config.jetty.server(). Call after the request thread mode has been chosen.
+     */
+    public Server createServer() {
+        Server server = new Server(createThreadPool());
+        // The same extras Javalin's default server has: load shedding when threads run low, and request counts that
+        // let stop() wait for requests in flight
+        server.addBean(new LowResourceMonitor(server));
+        server.insertHandler(new StatisticsHandler());
+        server.addEventListener(new LifeCycle.Listener() {
+            @Override
+            public void lifeCycleStarting(LifeCycle event) {
+                configureConnectors(server);
+            }
+        });
+        return server;
+    }
+
+    private ThreadPool createThreadPool() {
+        if (ConcurrencyUtil.INSTANCE.getUseLoom() && LoomUtil.INSTANCE.getLoomAvailable()) {
+            // Virtual threads: one per task, so there is no pool to size
+            return new LoomThreadPool("JettyServerThreadPool");
+        }
+        QueuedThreadPool pool = threadQueueSize > 0
+                ? new QueuedThreadPool(maxThreads, minThreads, threadIdleTimeoutMillis,
+                        new BlockingArrayQueue<>(threadQueueSize))
+                : new QueuedThreadPool(maxThreads, minThreads, threadIdleTimeoutMillis);
+        pool.setName("JettyServerThreadPool");
+        return pool;
+    }
+
+    // Replaces each default connector Javalin added with a configured one on the same host and port
+    private void configureConnectors(Server server) {
+        Connector[] connectors = server.getConnectors();
+        for (int i = 0; i < connectors.length; i++) {
+            if (connectors[i] instanceof ServerConnector && !connectors[i].isStarted()) {
+                ServerConnector original = (ServerConnector) connectors[i];
+                ServerConnector configured = createConnector(server);
+                configured.setHost(original.getHost());
+                configured.setPort(original.getPort());
+                connectors[i] = configured;
+            }
+        }
+        server.setConnectors(connectors);
+    }
+
+    private ServerConnector createConnector(Server server) {
+        HttpConfiguration http = new HttpConfiguration();
+        http.setUriCompliance(UriCompliance.RFC3986);
+        http.setSendServerVersion(false);
+        http.setRequestHeaderSize(requestHeaderSize);
+        http.setResponseHeaderSize(responseHeaderSize);
+        http.setOutputBufferSize(outputBufferSize);
+
+        ConnectionFactory[] factories = http2Enabled
+                ? new ConnectionFactory[] {new HttpConnectionFactory(http), new HTTP2CServerConnectionFactory(http)}
+                : new ConnectionFactory[] {new HttpConnectionFactory(http)};
+        ServerConnector connector = new ServerConnector(server, acceptors, selectors, factories);
+        // How long a kept-alive connection may sit idle before it is closed
+        connector.setIdleTimeout(idleTimeoutMillis);
+        connector.setAcceptQueueSize(acceptQueueSize);
+        return connector;
+    }
+}
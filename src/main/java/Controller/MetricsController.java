@@ -0,0 +1,180 @@
+package Controller;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import Util.ConnectionUtil;
+import Util.PoolStats;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves GET /metrics in the Prometheus text exposition format: request counts and latency histograms per route,
+ * JVM memory, GC and thread figures, and the connection pool and database executor gauges. Everything is read from
+ * live counters when scraped; nothing is computed on the request path.
+ */
+public class MetricsController {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final RequestMetrics requestMetrics;
+
+    public MetricsController(RequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
+    /**
+     * Registers the metrics endpoint on an app built by SocialMediaController.
+     * @param app the Javalin app to add the routes to.
+     */
+    public void addRoutes(Javalin app) {
+        app.get("/metrics", this::getMetrics);
+    }
+
+    private void getMetrics(Context ctx) {
+        StringBuilder out = new StringBuilder(8192);
+        writeRequests(out);
+        writeJvm(out);
+        writeDatabase(out);
+        ctx.contentType(CONTENT_TYPE).result(out.toString());
+    }
+
+    private void writeRequests(StringBuilder out) {
+        // Sorted, so that successive scrapes list the routes in the same order
+        List<RequestMetrics.Route> routes = requestMetrics.getRoutes();
+        routes.sort((a, b) -> (a.getRoute() + a.getMethod()).compareTo(b.getRoute() + b.getMethod()));
+
+        header(out, "http_requests_total", "counter", "Requests completed, by route template and status code.");
+        for (RequestMetrics.Route route : routes) {
+            for (Map.Entry<Integer, Long> status : route.getStatusCounts().entrySet()) {
+                out.append("http_requests_total{method=\"").append(route.getMethod())
+                        .append("\",route=\"").append(escape(route.getRoute()))
+                        .append("\",status=\"").append(status.getKey()).append("\"} ")
+                        .append(status.getValue()).append('\n');
+            }
+        }
+
+        header(out, "http_request_duration_seconds", "histogram",
+                "Time from a request arriving to its response being written, by route template.");
+        for (RequestMetrics.Route route : routes) {
+            String labels = "method=\"" + route.getMethod() + "\",route=\"" + escape(route.getRoute()) + "\"";
+            long[] counts = route.getBucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String bound = i < RequestMetrics.BUCKET_BOUNDS.length
+                        ? Double.toString(RequestMetrics.BUCKET_BOUNDS[i]) : "+Inf";
+                out.append("http_request_duration_seconds_bucket{").append(labels)
+                        .append(",le=\"").append(bound).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append("http_request_duration_seconds_sum{").append(labels).append("} ")
+                    .append(route.getTotalSeconds()).append('\n');
+            out.append("http_request_duration_seconds_count{").append(labels).append("} ")
+                    .append(cumulative).append('\n');
+        }
+    }
+
+    private void writeJvm(StringBuilder out) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        header(out, "jvm_memory_used_bytes", "gauge", "Memory in use, by area.");
+        gauge(out, "jvm_memory_used_bytes", "area=\"heap\"", memory.getHeapMemoryUsage().getUsed());
+        gauge(out, "jvm_memory_used_bytes", "area=\"nonheap\"", memory.getNonHeapMemoryUsage().getUsed());
+        header(out, "jvm_memory_committed_bytes", "gauge", "Memory committed by the JVM, by area.");
+        gauge(out, "jvm_memory_committed_bytes", "area=\"heap\"", memory.getHeapMemoryUsage().getCommitted());
+        gauge(out, "jvm_memory_committed_bytes", "area=\"nonheap\"", memory.getNonHeapMemoryUsage().getCommitted());
+        header(out, "jvm_memory_max_bytes", "gauge", "Most memory the JVM will use, by area, or -1 if unlimited.");
+        gauge(out, "jvm_memory_max_bytes", "area=\"heap\"", memory.getHeapMemoryUsage().getMax());
+        gauge(out, "jvm_memory_max_bytes", "area=\"nonheap\"", memory.getNonHeapMemoryUsage().getMax());
+
+        header(out, "jvm_memory_pool_used_bytes", "gauge", "Memory in use, by memory pool.");
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getUsage();
+            if (usage != null) {
+                gauge(out, "jvm_memory_pool_used_bytes", "pool=\"" + escape(pool.getName()) + "\"", usage.getUsed());
+            }
+        }
+
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        header(out, "jvm_gc_collections_total", "counter", "Garbage collections, by collector.");
+        for (GarbageCollectorMXBean gc : collectors) {
+            gauge(out, "jvm_gc_collections_total", "gc=\"" + escape(gc.getName()) + "\"", gc.getCollectionCount());
+        }
+        header(out, "jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collection, by collector.");
+        for (GarbageCollectorMXBean gc : collectors) {
+            out.append("jvm_gc_collection_seconds_total{gc=\"").append(escape(gc.getName())).append("\"} ")
+                    .append(gc.getCollectionTime() / 1000.0).append('\n');
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        header(out, "jvm_threads_current", "gauge", "Live platform threads.");
+        gauge(out, "jvm_threads_current", null, threads.getThreadCount());
+        header(out, "jvm_threads_daemon", "gauge", "Live daemon threads.");
+        gauge(out, "jvm_threads_daemon", null, threads.getDaemonThreadCount());
+        header(out, "jvm_threads_peak", "gauge", "Most live platform threads since the JVM started.");
+        gauge(out, "jvm_threads_peak", null, threads.getPeakThreadCount());
+        header(out, "jvm_threads_started_total", "counter", "Platform threads started since the JVM started.");
+        gauge(out, "jvm_threads_started_total", null, threads.getTotalStartedThreadCount());
+
+        header(out, "process_uptime_seconds", "gauge", "Time since the JVM started.");
+        out.append("process_uptime_seconds ").append(ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0)
+                .append('\n');
+    }
+
+    private void writeDatabase(StringBuilder out) {
+        PoolStats pool = ConnectionUtil.getPoolStats();
+        header(out, "db_pool_connections", "gauge", "Pooled connections, by state.");
+        gauge(out, "db_pool_connections", "state=\"active\"", pool.getActive());
+        gauge(out, "db_pool_connections", "state=\"idle\"", pool.getIdle());
+        header(out, "db_pool_max_connections", "gauge", "Most connections the pool will open.");
+        gauge(out, "db_pool_max_connections", null, pool.getMaxSize());
+        header(out, "db_pool_waiting_threads", "gauge", "Threads waiting for a connection.");
+        gauge(out, "db_pool_waiting_threads", null, pool.getWaiting());
+        header(out, "db_pool_acquires_total", "counter", "Connections handed out.");
+        gauge(out, "db_pool_acquires_total", null, pool.getAcquireCount());
+        header(out, "db_pool_acquire_timeouts_total", "counter", "Callers that gave up waiting for a connection.");
+        gauge(out, "db_pool_acquire_timeouts_total", null, pool.getTimeoutCount());
+        header(out, "db_pool_leaks_total", "counter", "Connections held past the leak threshold.");
+        gauge(out, "db_pool_leaks_total", null, pool.getLeakCount());
+
+        Map<String, Object> executor = ConnectionUtil.getDatabaseExecutor().getMetrics();
+        executorMetric(out, executor, "threads", "db_executor_threads", "gauge", "Threads running database handlers.");
+        executorMetric(out, executor, "active", "db_executor_active", "gauge", "Database handlers running.");
+        executorMetric(out, executor, "queued", "db_executor_queued", "gauge",
+                "Database handlers waiting for a thread.");
+        executorMetric(out, executor, "queueCapacity", "db_executor_queue_capacity", "gauge",
+                "Database handlers that can wait before requests are refused with 503.");
+        executorMetric(out, executor, "completed", "db_executor_completed_total", "counter",
+                "Database handlers completed.");
+        executorMetric(out, executor, "rejected", "db_executor_rejected_total", "counter",
+                "Requests refused with 503 because the queue was full.");
+    }
+
+    private static void executorMetric(StringBuilder out, Map<String, Object> metrics, String key, String name,
+            String type, String help) {
+        header(out, name, type, help);
+        out.append(name).append(' ').append(metrics.get(key)).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    // Label values may not contain raw backslashes, quotes or newlines
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
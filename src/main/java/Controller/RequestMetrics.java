@@ -0,0 +1,150 @@
+package Controller;
+
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts requests and their latencies per route template (eg GET /messages/{message_id}), for the /metrics endpoint.
+ * Recording a request is a map lookup and a few LongAdder increments: no locks, and no allocation once a route and
+ * status have been seen. Latencies go into fixed buckets, so the distribution is kept as a histogram rather than as
+ * individual samples, and quantiles are left to whoever scrapes it.
+ */
+public class RequestMetrics {
+
+    /**
+     * Upper bounds of the latency buckets, in seconds. A final +Inf bucket is implied.
+     */
+    static final double[] BUCKET_BOUNDS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    // The same bounds in nanoseconds, to compare against without converting every sample
+    private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS.length];
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            BUCKET_BOUNDS_NANOS[i] = Math.round(BUCKET_BOUNDS[i] * 1e9);
+        }
+    }
+
+    /**
+     * Used for requests that never reached a route, so that scanning for random paths cannot grow the map without
+     * limit.
+     */
+    static final String UNMATCHED_ROUTE = "unmatched";
+
+    // Keyed by method, then by route template
+    private final Map<HandlerType, Map<String, Route>> routes = new EnumMap<>(HandlerType.class);
+
+    public RequestMetrics() {
+        for (HandlerType method : HandlerType.values()) {
+            routes.put(method, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Records one completed request. Meant to be installed as Javalin's request logger, which reports the time from
+     * the request arriving to its response being written, including any time spent on the database executor.
+     */
+    public void record(Context ctx, Float executionTimeMs) {
+        // Still BEFORE when no endpoint ran: nothing matched, or a before handler ended the request
+        String route = ctx.handlerType() == HandlerType.BEFORE ? UNMATCHED_ROUTE : ctx.endpointHandlerPath();
+        Map<String, Route> byRoute = routes.get(ctx.method());
+        Route counters = byRoute.get(route);
+        if (counters == null) {
+            counters = byRoute.computeIfAbsent(route, path -> new Route(ctx.method().name(), path));
+        }
+        counters.record(ctx.status().getCode(), (long) (executionTimeMs * 1e6));
+    }
+
+    /**
+     * @return every route seen so far. The counters are live.
+     */
+    public List<Route> getRoutes() {
+        List<Route> all = new ArrayList<>();
+        for (Map<String, Route> byRoute : routes.values()) {
+            all.addAll(byRoute.values());
+        }
+        return all;
+    }
+
+    /**
+     * Live counters for one method and route template.
+     */
+    public static class Route {
+        private final String method;
+        private final String route;
+        // Indexed by status code, created on first use
+        private final AtomicReferenceArray<LongAdder> statusCounts = new AtomicReferenceArray<>(600);
+        // Not cumulative: each request is counted only in the first bucket it fits, the last being +Inf
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+        private final LongAdder totalNanos = new LongAdder();
+
+        Route(String method, String route) {
+            this.method = method;
+            this.route = route;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(int status, long nanos) {
+            if (status >= 0 && status < statusCounts.length()) {
+                LongAdder statusCount = statusCounts.get(status);
+                if (statusCount == null) {
+                    statusCounts.compareAndSet(status, null, new LongAdder());
+                    statusCount = statusCounts.get(status);
+                }
+                statusCount.increment();
+            }
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_NANOS.length && nanos > BUCKET_BOUNDS_NANOS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            totalNanos.add(nanos);
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        /**
+         * @return requests by status code, for the codes seen so far
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            for (int status = 0; status < statusCounts.length(); status++) {
+                LongAdder count = statusCounts.get(status);
+                if (count != null) {
+                    counts.put(status, count.sum());
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * @return requests per bucket of BUCKET_BOUNDS, plus a last one for slower requests. Not cumulative.
+         */
+        public long[] getBucketCounts() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+
+        public double getTotalSeconds() {
+            return totalNanos.sum() / 1e9;
+        }
+    }
+}
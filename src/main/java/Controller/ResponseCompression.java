@@ -0,0 +1,240 @@
+package Controller;
+
+import io.javalin.http.Context;
+import Util.Config;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses listing responses with whichever configured encoding the client's Accept-Encoding prefers. Listings are
+ * the same few field names repeated for every row, so they shrink several times over; responses below the size
+ * threshold are sent as they are, since compressing a single message costs more CPU than the bytes it saves.
+ */
+public class ResponseCompression {
+
+    private static final List<String> SUPPORTED = Arrays.asList("gzip", "deflate");
+    /**
+     * Separates a strong ETag from the encoding suffix added to it when the body is compressed, since the
+     * compressed and uncompressed bodies are different representations.
+     */
+    public static final String ETAG_SUFFIX_SEPARATOR = "--";
+
+    private final List<String> encodings;
+    private final int minSizeBytes;
+    private final int level;
+
+    /**
+     * @param encodings the encodings to offer, most preferred first, from gzip and deflate
+     * @param minSizeBytes responses smaller than this are not compressed
+     * @param level the zlib compression level, 1 (fastest) to 9 (smallest)
+     */
+    public ResponseCompression(List<String> encodings, int minSizeBytes, int level) {
+        for (String encoding : encodings) {
+            if (!SUPPORTED.contains(encoding)) {
+                throw new IllegalArgumentException("Unsupported response encoding " + encoding + "; use gzip or deflate.");
+            }
+        }
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be from 1 to 9.");
+        }
+        this.encodings = encodings;
+        this.minSizeBytes = minSizeBytes;
+        this.level = level;
+    }
+
+    /**
+     * @return compression for listings as set in application.properties
+     */
+    public static ResponseCompression fromConfig() {
+        List<String> encodings = new ArrayList<>();
+        if (Config.getBoolean("messages.compression.enabled", true)) {
+            for (String encoding : Config.getString("messages.compression.encodings", "gzip,deflate").split(",")) {
+                if (!encoding.trim().isEmpty()) {
+                    encodings.add(encoding.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return new ResponseCompression(encodings, Config.getInt("messages.compression.minSizeBytes", 1024),
+                Config.getInt("messages.compression.level", 6));
+    }
+
+    /**
+     * Sends json as the response body, compressed if it is large enough and the client accepts an encoding.
+     */
+    public void sendJson(Context ctx, byte[] json) throws IOException {
+        ctx.contentType("application/json");
+        String encoding = json.length >= minSizeBytes ? negotiate(ctx) : null;
+        if (encoding == null) {
+            ctx.result(json);
+            return;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (OutputStream out = compressor(encoding, compressed)) {
+            out.write(json);
+        }
+        ctx.header("Content-Encoding", encoding);
+        tagEncoding(ctx, encoding);
+        ctx.result(compressed.toByteArray());
+    }
+
+    /**
+     * Opens the response body for a JSON document of unknown length. Output is held back until minSizeBytes have
+     * been written, then sent compressed from there on; a body that never reaches the threshold is sent as is when
+     * the stream is closed. Until then flush() has no effect.
+     */
+    public OutputStream openJsonStream(Context ctx) {
+        ctx.contentType("application/json");
+        String encoding = negotiate(ctx);
+        if (encoding == null) {
+            return ctx.outputStream();
+        }
+        return new ThresholdOutputStream(ctx, encoding);
+    }
+
+    /**
+     * @return the encoding to use for this request, or null to send the body uncompressed
+     */
+    String negotiate(Context ctx) {
+        if (encodings.isEmpty()) {
+            return null;
+        }
+        // The body depends on Accept-Encoding whichever way this goes, so caches must key on it
+        ctx.header("Vary", "Accept-Encoding");
+        return negotiate(ctx.header("Accept-Encoding"));
+    }
+
+    // Picks the offered encoding with the highest q-value, breaking ties by our preference order
+    String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        String best = null;
+        double bestQuality = 0;
+        for (String encoding : encodings) {
+            double quality = quality(acceptEncoding, encoding);
+            if (quality > bestQuality) {
+                best = encoding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    // The q-value acceptEncoding gives to encoding, falling back to the value for "*", or 0 if neither is listed
+    private static double quality(String acceptEncoding, String encoding) {
+        double wildcard = 0;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String name = params[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals(encoding)) {
+                return quality;
+            }
+            if (name.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        return wildcard;
+    }
+
+    // Marks an ETag already on the response as belonging to the body in this encoding
+    static void tagEncoding(Context ctx, String encoding) {
+        String etag = ctx.res().getHeader("ETag");
+        if (etag != null && etag.endsWith("\"")) {
+            ctx.header("ETag", etag.substring(0, etag.length() - 1) + ETAG_SUFFIX_SEPARATOR + encoding + "\"");
+        }
+    }
+
+    private OutputStream compressor(String encoding, OutputStream out) throws IOException {
+        if (encoding.equals("gzip")) {
+            return new GZIPOutputStream(out, 8192, true) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(out, deflater, 8192, true) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    // A Deflater passed in is not released by close(), and holds native memory until it is
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Buffers the start of a streamed body to learn whether it is worth compressing.
+     */
+    private class ThresholdOutputStream extends OutputStream {
+        private final Context ctx;
+        private final String encoding;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(minSizeBytes);
+        private OutputStream out;
+
+        ThresholdOutputStream(Context ctx, String encoding) {
+            this.ctx = ctx;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (out != null) {
+                out.write(bytes, offset, length);
+                return;
+            }
+            buffer.write(bytes, offset, length);
+            if (buffer.size() >= minSizeBytes) {
+                ctx.header("Content-Encoding", encoding);
+                tagEncoding(ctx, encoding);
+                out = compressor(encoding, ctx.outputStream());
+                buffer.writeTo(out);
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out == null) {
+                out = ctx.outputStream();
+                buffer.writeTo(out);
+                buffer = null;
+            }
+            out.close();
+        }
+    }
+}
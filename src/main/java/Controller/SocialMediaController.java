@@ -2,14 +2,39 @@ package Controller;
 
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.UnauthorizedResponse;
+import io.javalin.json.JavalinJackson;
+import io.javalin.util.ConcurrencyUtil;
+import io.javalin.util.LoomUtil;
 import DAO.AccountDAO;
 import Service.AccountService;
 import Service.MessageService;
+import Service.SessionService;
 import Model.Account;
 import Model.Message;
+import Model.Session;
+import Util.Config;
+import Util.ConnectionUtil;
+import Util.DatabaseExecutor;
+import Util.Json;
+import java.util.LinkedHashMap;
 import java.util.List;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+import java.util.Set;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 import java.sql.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * TODO: You will need to write your own endpoints and handlers for your controller. The endpoints you will need can be
@@ -18,46 +43,300 @@ import java.sql.*;
  */
 public class SocialMediaController {
 
+    private static final Logger log = LoggerFactory.getLogger(SocialMediaController.class);
+    private static final String SESSION_TOKEN_HEADER = "X-Session-Token";
+    // Routes a client uses to get a token, which must work while it still holds an expired or revoked one
+    private static final Set<String> TOKENLESS_PATHS = Set.of("/login", "/register", "/register/available");
+    // The version tag withETag read before running its handler
+    private static final String ETAG_ATTRIBUTE = "etag";
+
     private final AccountDAO accountDAO = new AccountDAO();
     private final AccountService accountService = new AccountService(accountDAO);
-    private final MessageService messageService = new MessageService();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MessageService messageService = new MessageService(accountService);
+    private final SessionService sessionService = new SessionService();
+    private final AdminController adminController = new AdminController(accountService, messageService,
+            sessionService);
+    // Null when metrics.enabled is false
+    private final RequestMetrics requestMetrics = Config.getBoolean("metrics.enabled", true)
+            ? new RequestMetrics() : null;
+    private final int defaultPageLimit = Config.getInt("messages.page.defaultLimit", 100);
+    private final int maxPageLimit = Config.getInt("messages.page.maxLimit", 1000);
+    private final int maxBatchSize = Config.getInt("messages.batch.maxSize", 1000);
+    private final int maxSearchOffset = Config.getInt("messages.search.maxOffset", 10000);
+    // Null when handlers should run on Jetty's threads; chosen by startAPI
+    private DatabaseExecutor databaseExecutor;
+    // Limits database handlers running on Jetty's threads instead, or null for no limit; chosen by startAPI
+    private Semaphore databaseAdmissions;
+    private final String retryAfterSeconds = Config.getString("db.executor.retryAfterSeconds", "1");
+    private final ResponseCompression listingCompression = ResponseCompression.fromConfig();
+    private final boolean streamListings = Config.getBoolean("messages.stream.enabled", true);
+    // A streamed listing holds its thread for as long as the client takes to download it
+    private final Semaphore listingStreams = new Semaphore(Config.getInt("messages.stream.maxConcurrent", 4));
     /**
      * In order for the test cases to work, you will need to write the endpoints in the startAPI() method, as the test
      * suite must receive a Javalin object from this method.
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        boolean virtualThreads = configureRequestThreads();
+        configureDatabaseExecutor(virtualThreads);
+        HttpTransport transport = Config.getBoolean("server.transport.enabled", true) ? new HttpTransport() : null;
+        Javalin app = Javalin.create(config -> {
+            if (transport != null) {
+                config.jetty.server(transport::createServer);
+            }
+            // ctx.json() and friends use the same mapper as the Json readers and writers
+            config.jsonMapper(new JavalinJackson(Json.mapper()));
+            // Listings are compressed by ResponseCompression; everything else is small enough to send as it is
+            config.compression.none();
+            if (requestMetrics != null) {
+                // Called once each response has been written, with the time taken since the request arrived
+                config.requestLogger.http(requestMetrics::record);
+            }
+        });
         // app.get("example-endpoint", this::exampleHandler);
 
+        // Check any session token the client presents, without touching the database, except where one is issued
+        app.before(this::verifySessionToken);
+
         // User Registration
-        app.post("/register", this::registerUser);
+        app.post("/register", onDatabaseExecutor(this::registerUser));
+
+        // Check whether a username is free before registering
+        app.get("/register/available", onDatabaseExecutor(this::isUsernameAvailable));
 
         // User Login
-        app.post("/login", this::login);
+        app.post("/login", onDatabaseExecutor(this::login));
+
+        // Describe the session behind the presented token, or revoke it
+        app.get("/session", this::getSession);
+        app.post("/logout", this::logout);
 
         // Create a new message
-        app.post("/messages", this::createMessage);
+        app.post("/messages", messageService.isGroupCommitEnabled()
+                ? this::submitMessage : onDatabaseExecutor(this::createMessage));
 
-        // Retrieve all messages
-        app.get("/messages", this::getAllMessages);
+        // Create many messages in one request
+        app.post("/messages/batch", onDatabaseExecutor(this::createMessages));
+
+        // Retrieve all messages, or one page of them when limit/after are given
+        app.get("/messages", onDatabaseExecutor(this::getAllMessages));
+
+        // Search message text, best match first. Registered before /messages/{message_id}, which would match it too.
+        app.get("/messages/search", onDatabaseExecutor(this::searchMessages));
 
         // Retrieve message by ID
-        app.get("/messages/{message_id}", this::getMessageById);
+        app.get("/messages/{message_id}", withETag(this::messageTag, this::getMessageById));
 
         // Delete a message by ID
-        app.delete("/messages/{message_id}", this::deleteMessageById);
+        app.delete("/messages/{message_id}", onDatabaseExecutor(this::deleteMessageById));
 
         // Update a message by ID
-        app.patch("/messages/{message_id}", this::updateMessageById);
+        app.patch("/messages/{message_id}", onDatabaseExecutor(this::updateMessageById));
+
+        // Retrieve messages by user ID, optionally paginated with limit/after
+        app.get("/accounts/{account_id}/messages",
+                withETag(this::timelineTag, this::getMessagesByUserId));
 
-        // Retrieve messages by user ID
-        app.get("/accounts/{account_id}/messages", this::getMessagesByUserId);
+        adminController.addRoutes(app);
+        if (requestMetrics != null) {
+            new MetricsController(requestMetrics).addRoutes(app);
+        }
+
+        // Once Jetty has stopped taking requests, write the messages still queued for group commit
+        app.events(event -> event.serverStopped(messageService::close));
 
         return app;
     }
 
+    /**
+     * Chooses the threads Jetty runs handlers on, from server.threads:
+     *  platform - a pool of at most 250 platform threads, so at most that many requests can block on JDBC at once
+     *  virtual  - a new virtual thread per request, so blocked requests are limited only by the connection pool
+     *  auto     - virtual if the JDK supports it (21+), otherwise platform
+     * Javalin reads this when the app is created, and the setting is JVM wide.
+     * @return true if handlers will actually run on virtual threads
+     */
+    private boolean configureRequestThreads() {
+        String mode = Config.getString("server.threads", "auto");
+        boolean virtual;
+        switch (mode) {
+            case "platform":
+                virtual = false;
+                break;
+            case "virtual":
+                virtual = true;
+                if (!LoomUtil.INSTANCE.getLoomAvailable()) {
+                    log.warn("server.threads=virtual needs JDK 21 or later; using platform threads");
+                }
+                break;
+            case "auto":
+                virtual = true;
+                break;
+            default:
+                throw new IllegalArgumentException("server.threads must be auto, virtual or platform, not " + mode);
+        }
+        ConcurrencyUtil.INSTANCE.setUseLoom(virtual);
+        return virtual && LoomUtil.INSTANCE.getLoomAvailable();
+    }
+
+    /**
+     * Decides from db.executor.enabled where database handlers run:
+     *  true  - on the database executor, so a bounded platform thread pool is never tied up waiting on JDBC
+     *  false - on Jetty's threads, with no limit
+     *  auto  - on the database executor when handlers run on platform threads. A virtual thread costs nothing to park
+     *          while it waits for a connection, so there handlers run inline, but no more of them at once than the
+     *          executor would hold; beyond that they are refused just as the executor refuses them.
+     */
+    private void configureDatabaseExecutor(boolean virtualThreads) {
+        String mode = Config.getString("db.executor.enabled", "auto");
+        DatabaseExecutor executor = ConnectionUtil.getDatabaseExecutor();
+        switch (mode) {
+            case "true":
+                databaseExecutor = executor;
+                break;
+            case "false":
+                break;
+            case "auto":
+                if (virtualThreads) {
+                    databaseAdmissions = new Semaphore(executor.getCapacity());
+                } else {
+                    databaseExecutor = executor;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("db.executor.enabled must be auto, true or false, not " + mode);
+        }
+    }
+
+    /**
+     * Runs handler on the database executor, releasing the Jetty thread while it waits, or inline within the
+     * admission limit. When the executor's queue is full, or the limit is reached, the request is refused at once
+     * with 503 and Retry-After, so overload shows up as fast failures rather than as ever-growing latency for
+     * everyone.
+     */
+    private Handler onDatabaseExecutor(Handler handler) {
+        if (databaseExecutor == null) {
+            if (databaseAdmissions == null) {
+                return handler;
+            }
+            return ctx -> {
+                if (!databaseAdmissions.tryAcquire()) {
+                    respondOverloaded(ctx);
+                    return;
+                }
+                try {
+                    handler.handle(ctx);
+                } finally {
+                    databaseAdmissions.release();
+                }
+            };
+        }
+        return ctx -> ctx.future(() -> {
+            try {
+                return databaseExecutor.submit(() -> handler.handle(ctx));
+            } catch (RejectedExecutionException e) {
+                respondOverloaded(ctx);
+                return CompletableFuture.completedFuture(null);
+            }
+        });
+    }
+
+    // Asks the client to come back later, without doing any of the work
+    private void respondOverloaded(Context ctx) {
+        ctx.status(503);
+        ctx.header("Retry-After", retryAfterSeconds);
+        ctx.result("");
+    }
+
+    // Responds to a failed database call. Running out of time waiting for a pooled connection is overload, like a
+    // full executor queue, so it gets 503 too rather than an error.
+    private void respondDatabaseError(Context ctx, SQLException e, String message) {
+        if (e instanceof SQLTransientConnectionException) {
+            respondOverloaded(ctx);
+            return;
+        }
+        ctx.status(500);
+        ctx.result(message);
+    }
+
+    /**
+     * Adds a strong ETag to handler's successful responses, and answers 304 Not Modified straight away when the
+     * client's If-None-Match already holds the current tag. Tags come from version counters, not from the body, so an
+     * unchanged poll costs neither a query nor serialization, and never reaches the database executor. Otherwise
+     * handler runs on the database executor, and the tag, taken before it read anything, goes only on a 200 with a
+     * body; an error or an empty "not found" body must not be cached against it.
+     * @param tagOf the current tag for the requested resource, or null to leave the request to the handler
+     */
+    private Handler withETag(Function<Context, String> tagOf, Handler handler) {
+        Handler tagged = onDatabaseExecutor(ctx -> {
+            handler.handle(ctx);
+            String tag = ctx.attribute(ETAG_ATTRIBUTE);
+            if (tag != null && ctx.statusCode() == 200 && hasBody(ctx)) {
+                ctx.header("ETag", "\"" + tag + "\"");
+                String encoding = ctx.res().getHeader("Content-Encoding");
+                if (encoding != null) {
+                    ResponseCompression.tagEncoding(ctx, encoding);
+                }
+            }
+        });
+        return ctx -> {
+            String tag = tagOf.apply(ctx);
+            if (tag != null) {
+                String matched = matchingETag(ctx.header("If-None-Match"), tag);
+                if (matched != null) {
+                    ctx.header("ETag", matched);
+                    ctx.status(304);
+                    return;
+                }
+                ctx.attribute(ETAG_ATTRIBUTE, tag);
+            }
+            tagged.handle(ctx);
+        };
+    }
+
+    // Handlers behind withETag set their body as a byte array or string, which can be measured without reading it
+    private static boolean hasBody(Context ctx) throws IOException {
+        InputStream body = ctx.resultInputStream();
+        return body != null && body.available() > 0;
+    }
+
+    // Returns the entity tag in ifNoneMatch that names the current version, as the client sent it, or null. A
+    // compressed response carries the tag with an encoding suffix, and matches just as well.
+    private String matchingETag(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String entityTag = candidate.trim();
+            String opaque = entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+            if (opaque.length() < 2 || !opaque.startsWith("\"") || !opaque.endsWith("\"")) {
+                continue;
+            }
+            opaque = opaque.substring(1, opaque.length() - 1);
+            if (opaque.equals(tag) || opaque.startsWith(tag + ResponseCompression.ETAG_SUFFIX_SEPARATOR)) {
+                return entityTag;
+            }
+        }
+        return null;
+    }
+
+    private String messageTag(Context ctx) {
+        try {
+            return messageService.getMessageVersionTag(Integer.parseInt(ctx.pathParam("message_id")));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String timelineTag(Context ctx) {
+        try {
+            return messageService.getTimelineVersionTag(Integer.parseInt(ctx.pathParam("account_id")));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * This is an example handler for an example endpoint.
      * @param context The Javalin Context object manages information about both the HTTP request and response.
@@ -68,22 +347,43 @@ public class SocialMediaController {
 
     private void registerUser(Context ctx) {
         try {
-            Account account = objectMapper.readValue(ctx.body(), Account.class);
+            Account account = Json.readAccount(ctx.bodyInputStream());
     
             // Create the account
             Account createdAccount = accountService.registerAccount(account);
-            ctx.status(200).json(createdAccount); 
+            ctx.status(200);
+            respondJson(ctx, Json.writeAccount(createdAccount)); 
     
         } catch (IllegalArgumentException e) {
             ctx.status(400).result(""); 
+        } catch (SQLException e) {
+            respondDatabaseError(ctx, e, "Internal server error.");
         } catch (Exception e) {
             ctx.status(500).result("Internal server error.");
         }
     }
 
+    private void isUsernameAvailable(Context ctx) {
+        String username = ctx.queryParam("username");
+        if (username == null || username.trim().isEmpty()) {
+            ctx.status(400);
+            ctx.result("");
+            return;
+        }
+
+        try {
+            Map<String, Object> availability = new LinkedHashMap<>();
+            availability.put("username", username);
+            availability.put("available", !accountService.doesUsernameExist(username));
+            ctx.json(availability);
+        } catch (SQLException e) {
+            respondDatabaseError(ctx, e, "Database error.");
+        }
+    }
+
     private void login(Context ctx) {
         try {
-            Account account = objectMapper.readValue(ctx.body(), Account.class);
+            Account account = Json.readAccount(ctx.bodyInputStream());
     
             // Validate username and password
             if (account.getUsername() == null || account.getUsername().trim().isEmpty()) {
@@ -97,69 +397,274 @@ public class SocialMediaController {
     
             // Attempt to log in
             Account loggedInAccount = accountService.login(account.getUsername(), account.getPassword());
-            ctx.json(loggedInAccount); 
+            // Clients send this back as "Authorization: Bearer <token>" instead of logging in again
+            ctx.header(SESSION_TOKEN_HEADER, sessionService.issue(loggedInAccount));
+            respondJson(ctx, Json.writeAccount(loggedInAccount)); 
     
         } catch (IllegalArgumentException e) {
             ctx.status(401).result("");
         } catch (SQLException e) {
-            ctx.status(500).result("Database error.");
+            respondDatabaseError(ctx, e, "Database error.");
         } catch (Exception e) {
             ctx.status(500).result("Internal server error.");
         }
     }
 
+    /**
+     * A request with a bearer token must carry a valid one; the session is then available to handlers as the
+     * "session" attribute. Requests without a token are unaffected.
+     */
+    private void verifySessionToken(Context ctx) {
+        String token = bearerToken(ctx);
+        if (token == null || TOKENLESS_PATHS.contains(ctx.path())) {
+            return;
+        }
+        Session session = sessionService.verify(token);
+        if (session == null) {
+            throw new UnauthorizedResponse("");
+        }
+        ctx.attribute("session", session);
+    }
+
+    private void getSession(Context ctx) {
+        Session session = ctx.attribute("session");
+        if (session == null) {
+            ctx.status(401);
+            ctx.result("");
+            return;
+        }
+        ctx.json(session);
+    }
+
+    private void logout(Context ctx) {
+        if (ctx.attribute("session") == null) {
+            ctx.status(401);
+            ctx.result("");
+            return;
+        }
+        try {
+            sessionService.revoke(bearerToken(ctx));
+        } catch (IllegalStateException e) {
+            // The revocation set is full; the token stays valid, so do not report a logout
+            respondOverloaded(ctx);
+            return;
+        }
+        ctx.status(200);
+        ctx.result("");
+    }
+
+    private String bearerToken(Context ctx) {
+        String authorization = ctx.header("Authorization");
+        if (authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return null;
+        }
+        return authorization.substring(7).trim();
+    }
+
     private void createMessage(Context ctx) {
+        Message message = readNewMessage(ctx);
+        if (message == null) {
+            return;
+        }
+    
+        try {
+            // A single INSERT; an unknown posted_by comes back as an IllegalArgumentException
+            Message createdMessage = messageService.createMessage(message);
+    
+            ctx.status(200);
+            respondJson(ctx, Json.writeMessage(createdMessage));
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+            ctx.result("");
+        } catch (SQLException e) {
+            respondDatabaseError(ctx, e, "Internal Server Error: " + e.getMessage());
+        }
+    }
+
+    // With group commit the insert happens on the writer's thread, so the request waits on its future rather than
+    // holding a database executor thread for the flush interval
+    private void submitMessage(Context ctx) {
+        Message message = readNewMessage(ctx);
+        if (message == null) {
+            return;
+        }
+
+        ctx.future(() -> messageService.submitMessage(message).handle((createdMessage, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause == null) {
+                ctx.status(200);
+                respondJson(ctx, Json.writeMessage(createdMessage));
+            } else if (cause instanceof IllegalArgumentException) {
+                ctx.status(400);
+                ctx.result("");
+            } else if (cause instanceof RejectedExecutionException) {
+                respondOverloaded(ctx);
+            } else if (cause instanceof SQLException) {
+                respondDatabaseError(ctx, (SQLException) cause, "Internal Server Error: " + cause.getMessage());
+            } else {
+                ctx.status(500);
+                ctx.result("Internal server error.");
+            }
+            return null;
+        }));
+    }
+
+    // Reads the body of POST /messages, or responds 400 and returns null if it is not a valid new message
+    private Message readNewMessage(Context ctx) {
         Message message;
         try {
-            message = objectMapper.readValue(ctx.body(), Message.class);
+            message = Json.readMessage(ctx.bodyInputStream());
         } catch (Exception e) {
             ctx.status(400);
             ctx.result(""); 
-            return;
+            return null;
         }
     
         if (message.getMessage_text() == null || message.getMessage_text().trim().isEmpty()) {
             ctx.status(400);
             ctx.result("");
-            return;
+            return null;
         }
         if (message.getMessage_text().length() > 255) {
+            ctx.status(400);
+            ctx.result("");
+            return null;
+        }
+        return message;
+    }
+
+    private void createMessages(Context ctx) {
+        List<Message> messages;
+        try {
+            messages = Json.readMessages(ctx.bodyInputStream());
+        } catch (Exception e) {
             ctx.status(400);
             ctx.result("");
             return;
         }
-    
+
+        if (messages == null || messages.size() > maxBatchSize || messages.contains(null)) {
+            ctx.status(400);
+            ctx.result("");
+            return;
+        }
+
         try {
-            if (!accountService.doesUserExist(message.getPosted_by())) {
-                ctx.status(400);
-                ctx.result("");
-                return;
-            }
-    
-            Message createdMessage = messageService.createMessage(message);
-    
+            // Each item succeeds or fails on its own; the response reports every item
             ctx.status(200);
-            ctx.json(createdMessage);
+            listingCompression.sendJson(ctx, Json.writeValue(messageService.createMessages(messages)));
         } catch (IllegalArgumentException e) {
             ctx.status(400);
-            ctx.result(e.getMessage());
+            ctx.result("");
         } catch (SQLException e) {
+            respondDatabaseError(ctx, e, "Internal Server Error: " + e.getMessage());
+        } catch (IOException e) {
             ctx.status(500);
-            ctx.result("Internal Server Error: " + e.getMessage());
+            ctx.result("Internal server error.");
         }
     }
 
     private void getAllMessages(Context ctx) {
         try {
+            if (isPageRequest(ctx)) {
+                listingCompression.sendJson(ctx, Json.writeMessagePage(
+                        messageService.getMessagesPage(pageAfter(ctx), pageLimit(ctx))));
+                return;
+            }
+
+            if (streamListings) {
+                if (!listingStreams.tryAcquire()) {
+                    respondOverloaded(ctx);
+                    return;
+                }
+                try {
+                    streamAllMessages(ctx);
+                } finally {
+                    listingStreams.release();
+                }
+                return;
+            }
+
             // Retrieve all messages using the message service
             List<Message> messages = messageService.getAllMessages();
 
             // Set the response body to the list of messages
-            ctx.json(messages); 
+            listingCompression.sendJson(ctx, Json.writeMessages(messages)); 
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+            ctx.result("Invalid page parameters.");
         } catch (SQLException e) {
             // Handle any SQL exceptions
+            respondDatabaseError(ctx, e, "Internal Server Error: " + e.getMessage());
+        } catch (IOException e) {
+            ctx.status(500);
+            ctx.result("Internal server error.");
+        }
+    }
+
+    /**
+     * Handles GET /messages/search?q=&limit=&offset=. q is one or more words that a message must all contain, a word
+     * ending in * matching any word that starts with it. Responds with one page of results and the total number of
+     * matches, or 400 if q has no searchable words.
+     */
+    private void searchMessages(Context ctx) {
+        if (!messageService.isSearchEnabled()) {
+            ctx.status(404);
+            return;
+        }
+        try {
+            String offsetParam = ctx.queryParam("offset");
+            int offset = offsetParam == null ? 0 : Integer.parseInt(offsetParam);
+            if (offset < 0 || offset > maxSearchOffset) {
+                throw new IllegalArgumentException("offset must be between 0 and " + maxSearchOffset + ".");
+            }
+            listingCompression.sendJson(ctx, Json.writeSearchResults(
+                    messageService.searchMessages(ctx.queryParam("q"), offset, pageLimit(ctx))));
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
+            ctx.result("Invalid search parameters.");
+        } catch (SQLException e) {
+            respondDatabaseError(ctx, e, "Internal Server Error: " + e.getMessage());
+        } catch (IOException e) {
             ctx.status(500);
-            ctx.result("Internal Server Error: " + e.getMessage());
+            ctx.result("Internal server error.");
+        }
+    }
+
+    /**
+     * Writes every message to the response as a JSON array, a chunk of rows at a time, so memory use does not grow
+     * with the table and no connection is held while the client downloads. The response has no Content-Length and is
+     * sent with chunked transfer encoding, compressed once it passes the compression threshold.
+     */
+    private void streamAllMessages(Context ctx) throws SQLException {
+        ctx.status(200);
+        try {
+            OutputStream body = listingCompression.openJsonStream(ctx);
+            JsonGenerator json = Json.mapper().getFactory().createGenerator(body);
+            json.writeStartArray();
+            boolean[] first = {true};
+            messageService.forEachMessage(message -> {
+                try {
+                    Json.streamingMessageWriter().writeValue(json, message);
+                    if (first[0]) {
+                        // Get the first row to the client without waiting for the buffer to fill. When compressing,
+                        // this waits until there is enough output to decide whether to compress.
+                        json.flush();
+                        first[0] = false;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.writeEndArray();
+            json.close();
+        } catch (IOException | UncheckedIOException e) {
+            // The client went away mid-stream; there is nobody left to send an error to
+        } catch (SQLException e) {
+            if (!ctx.res().isCommitted()) {
+                throw e;
+            }
+            // Too late to change the status, so the array is left unterminated and the client sees a truncated body
         }
     }
 
@@ -177,14 +682,13 @@ public class SocialMediaController {
                 return;
             }
     
-            ctx.json(message);
+            respondJson(ctx, Json.writeMessage(message));
     
         } catch (NumberFormatException e) {
             ctx.status(400); 
             ctx.result("Invalid message ID format.");
         } catch (SQLException e) {
-            ctx.status(500); 
-            ctx.result("Database error.");
+            respondDatabaseError(ctx, e, "Database error.");
         }
     }
 
@@ -193,14 +697,11 @@ public class SocialMediaController {
             // Retrieve the message ID from the path parameters
             int messageId = Integer.parseInt(ctx.pathParam("message_id"));
             
-            // Retrieve the message before deletion to return it in the response
-            Message message = messageService.getMessageById(messageId);
-            
-            // Delete the message using the message service
-            boolean deleted = messageService.deleteMessageById(messageId);
+            // Delete the message, getting back the row as it was before the delete
+            Message message = messageService.deleteMessageById(messageId);
             
-            if (deleted) {
-                ctx.json(message); 
+            if (message != null) {
+                respondJson(ctx, Json.writeMessage(message)); 
             } else {
                 ctx.status(200);
             }
@@ -210,15 +711,14 @@ public class SocialMediaController {
             ctx.result("Invalid message ID format.");
         } catch (SQLException e) {
             // Handle any SQL exceptions
-            ctx.status(500); 
-            ctx.result("Internal Server Error: " + e.getMessage());
+            respondDatabaseError(ctx, e, "Internal Server Error: " + e.getMessage());
         }
     }
 
     private void updateMessageById(Context ctx) {
         try {
             int messageId = Integer.parseInt(ctx.pathParam("message_id"));
-            Message updateMessage = ctx.bodyAsClass(Message.class);
+            Message updateMessage = Json.readMessage(ctx.bodyInputStream());
     
             // Validate the new message text
             if (updateMessage.getMessage_text() == null || updateMessage.getMessage_text().trim().isEmpty()) {
@@ -232,26 +732,21 @@ public class SocialMediaController {
                 return;
             }
     
-            // Check if the message exists
-            Message existingMessage = messageService.getMessageById(messageId);
-            if (existingMessage == null) {
+            // Update the message, getting back the row as it is after the update
+            Message updatedMessage = messageService.updateMessageText(messageId, updateMessage.getMessage_text());
+            if (updatedMessage == null) {
                 ctx.status(400); 
                 ctx.result(""); 
                 return;
             }
     
-            // Update the message
-            existingMessage.setMessage_text(updateMessage.getMessage_text());
-            Message updatedMessage = messageService.updateMessage(existingMessage);
-    
             // Return the updated message as JSON
-            ctx.json(updatedMessage);
+            respondJson(ctx, Json.writeMessage(updatedMessage));
         } catch (NumberFormatException e) {
             ctx.status(400); 
             ctx.result(""); 
         } catch (SQLException e) {
-            ctx.status(500); 
-            ctx.result("Internal Server Error: " + e.getMessage());
+            respondDatabaseError(ctx, e, "Internal Server Error: " + e.getMessage());
         } catch (IllegalArgumentException e) {
             ctx.status(400); 
             ctx.result(""); 
@@ -265,18 +760,55 @@ public class SocialMediaController {
         try {
             // Retrieve the account ID from the URL path parameter
             int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+
+            if (isPageRequest(ctx)) {
+                listingCompression.sendJson(ctx, Json.writeMessagePage(
+                        messageService.getMessagesByUserIdPage(accountId, pageAfter(ctx), pageLimit(ctx))));
+                return;
+            }
     
             // Call the service to get messages by user ID
             List<Message> messages = messageService.getMessagesByUserId(accountId);
     
             // Set the response status and return the messages as JSON
-            ctx.status(200).json(messages);
+            ctx.status(200);
+            listingCompression.sendJson(ctx, Json.writeMessages(messages));
         } catch (NumberFormatException e) {
             ctx.status(400); 
-            ctx.result("Invalid account ID format.");
+            ctx.result("Invalid account ID or page parameters.");
         } catch (SQLException e) {
+            respondDatabaseError(ctx, e, "Internal Server Error: " + e.getMessage());
+        } catch (IOException e) {
             ctx.status(500); 
-            ctx.result("Internal Server Error: " + e.getMessage());
+            ctx.result("Internal server error.");
         }
     }
-}
\ No newline at end of file
+
+    // Sends JSON already serialized by one of the Json writers
+    private void respondJson(Context ctx, byte[] json) {
+        ctx.contentType("application/json");
+        ctx.result(json);
+    }
+
+    // A listing is paginated when the client asks for a page size or passes a cursor.
+    private boolean isPageRequest(Context ctx) {
+        return ctx.queryParam("limit") != null || ctx.queryParam("after") != null;
+    }
+
+    private int pageLimit(Context ctx) {
+        String limit = ctx.queryParam("limit");
+        if (limit == null) {
+            return defaultPageLimit;
+        }
+        int value = Integer.parseInt(limit);
+        if (value < 1) {
+            throw new NumberFormatException("limit must be at least 1.");
+        }
+        return Math.min(value, maxPageLimit);
+    }
+
+    private int pageAfter(Context ctx) {
+        String after = ctx.queryParam("after");
+        return after == null ? 0 : Integer.parseInt(after);
+    }
+}
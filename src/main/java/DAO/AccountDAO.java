@@ -1,19 +1,29 @@
 package DAO;
 import java.sql.*;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import Model.Account;
 import Util.ConnectionUtil;
 
 
 public class AccountDAO {
-    Connection connection = ConnectionUtil.getConnection();
-
     public Account createAccount(Account account) throws SQLException {
         String query = "INSERT INTO account (username, password) VALUES (?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, account.getUsername());
             stmt.setString(2, account.getPassword());
             
-            int affectedRows = stmt.executeUpdate();
+            // The unique constraint on username rejects duplicates, so there is no separate existence check
+            int affectedRows;
+            try {
+                affectedRows = stmt.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                throw new IllegalArgumentException("Username already exists.");
+            }
             
             if (affectedRows == 0) {
                 throw new SQLException("Creating account failed, no rows affected.");
@@ -32,7 +42,8 @@ public class AccountDAO {
 
     public boolean doesUsernameExist(String username) throws SQLException {
         String query = "SELECT COUNT(*) FROM account WHERE username = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
             stmt.setString(1, username);
             
             try (ResultSet resultSet = stmt.executeQuery()) {
@@ -42,21 +53,75 @@ public class AccountDAO {
         }
     }
 
-    public boolean doesAccountIdExist(int accountId) throws SQLException {
-        String query = "SELECT COUNT(*) FROM account WHERE account_id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setInt(1, accountId);
-            
+    /**
+     * Passes every account id to consumer as an int, without boxing.
+     */
+    public void forEachAccountId(IntConsumer consumer) throws SQLException {
+        String query = "SELECT account_id FROM account";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query);
+             ResultSet resultSet = stmt.executeQuery()) {
+            while (resultSet.next()) {
+                consumer.accept(resultSet.getInt(1));
+            }
+        }
+    }
+
+    /**
+     * Passes every username to consumer.
+     */
+    public void forEachUsername(Consumer<String> consumer) throws SQLException {
+        String query = "SELECT username FROM account";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query);
+             ResultSet resultSet = stmt.executeQuery()) {
+            while (resultSet.next()) {
+                String username = resultSet.getString(1);
+                if (username != null) {
+                    consumer.accept(username);
+                }
+            }
+        }
+    }
+
+    public long countAccounts() throws SQLException {
+        String query = "SELECT COUNT(*) FROM account";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query);
+             ResultSet resultSet = stmt.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Looks up many account ids in one query.
+     * @return the subset of accountIds that belong to an existing account
+     */
+    public Set<Integer> findExistingAccountIds(Collection<Integer> accountIds) throws SQLException {
+        Set<Integer> existing = new HashSet<>();
+        if (accountIds.isEmpty()) {
+            return existing;
+        }
+
+        // A single array parameter keeps the SQL text the same for any number of ids
+        String query = "SELECT account_id FROM account WHERE account_id = ANY(?)";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setObject(1, accountIds.toArray(new Integer[0]));
             try (ResultSet resultSet = stmt.executeQuery()) {
-                resultSet.next();
-                return resultSet.getInt(1) > 0;
+                while (resultSet.next()) {
+                    existing.add(resultSet.getInt(1));
+                }
             }
         }
+        return existing;
     }
 
     public Account login(String username, String password) throws SQLException {
         String query = "SELECT * FROM account WHERE username = ? AND password = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
             stmt.setString(1, username);
             stmt.setString(2, password);
 
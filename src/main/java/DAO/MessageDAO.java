@@ -1,30 +1,37 @@
 package DAO;
 import java.sql.*;
 import Model.Message;
+import Util.Config;
 import Util.ConnectionUtil;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class MessageDAO {
-    Connection connection = ConnectionUtil.getConnection();
+    private final int streamFetchSize = Config.getInt("messages.stream.fetchSize", 500);
 
     public Message createMessage(Message message) throws SQLException {
         // Validate message fields
         validateMessage(message);
 
-        // Check if the user exists
-        if (!doesUserExist(message.getPosted_by())) {
-            throw new IllegalArgumentException("User does not exist.");
-        }
-
-        // Insert the message into the database
+        // Insert the message into the database. The foreign key on posted_by rejects unknown users, so there is no
+        // separate existence check.
         String query = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setInt(1, message.getPosted_by());
             stmt.setString(2, message.getMessage_text());
             stmt.setLong(3, message.getTime_posted_epoch());
 
-            int affectedRows = stmt.executeUpdate();
+            int affectedRows;
+            try {
+                affectedRows = stmt.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                throw new IllegalArgumentException("User does not exist.");
+            }
             if (affectedRows == 0) {
                 throw new SQLException("Creating message failed, no rows affected.");
             }
@@ -41,43 +48,84 @@ public class MessageDAO {
         return message;
     }
 
-    // Validates the message fields.
-    private void validateMessage(Message message) {
-        if (message.getMessage_text() == null || message.getMessage_text().trim().isEmpty()) {
-            throw new IllegalArgumentException("Message text cannot be blank.");
+    /**
+     * Inserts all of the messages with one JDBC batch in a single transaction, setting each message's generated
+     * message_id. Either every message is inserted or, if any insert fails, none are. Callers are expected to have
+     * validated the messages already.
+     */
+    public List<Message> createMessages(List<Message> messages) throws SQLException {
+        if (messages.isEmpty()) {
+            return messages;
         }
-        if (message.getMessage_text().length() > 255) {
-            throw new IllegalArgumentException("Message text cannot exceed 255 characters.");
+
+        String query = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                for (Message message : messages) {
+                    stmt.setInt(1, message.getPosted_by());
+                    stmt.setString(2, message.getMessage_text());
+                    stmt.setLong(3, message.getTime_posted_epoch());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+
+                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                    for (Message message : messages) {
+                        if (!generatedKeys.next()) {
+                            throw new SQLException("Creating messages failed, not every ID was obtained.");
+                        }
+                        message.setMessage_id(generatedKeys.getInt(1));
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                if (isIntegrityViolation(e)) {
+                    throw new IllegalArgumentException("User does not exist.");
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
         }
+        return messages;
     }
 
-    // Checks if a user exists in the account table.
-    public boolean doesUserExist(int userId) throws SQLException {
-        String query = "SELECT COUNT(*) FROM account WHERE account_id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
-            stmt.setInt(1, userId);
-            try (ResultSet resultSet = stmt.executeQuery()) {
-                if (resultSet.next()) {
-                    return resultSet.getInt(1) > 0;
-                }
+    // A failed batch wraps the statement's own exception, so look through the chain for a constraint violation.
+    private boolean isIntegrityViolation(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLIntegrityConstraintViolationException) {
+                return true;
             }
         }
-        return false;
+        SQLException next = e.getNextException();
+        return next != null && next != e && isIntegrityViolation(next);
+    }
+
+    // Validates the message fields.
+    private void validateMessage(Message message) {
+        validateText(message.getMessage_text());
+    }
+
+    private void validateText(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("Message text cannot be blank.");
+        }
+        if (text.length() > 255) {
+            throw new IllegalArgumentException("Message text cannot exceed 255 characters.");
+        }
     }
 
     public Message getMessageById(int messageId) throws SQLException {
         String query = "SELECT * FROM message WHERE message_id = ?";
-            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
             stmt.setInt(1, messageId);
             try (ResultSet resultSet = stmt.executeQuery()) {
                 if (resultSet.next()) {
                     // Create and return the Message object
-                    return new Message(
-                            resultSet.getInt("message_id"),
-                            resultSet.getInt("posted_by"),
-                            resultSet.getString("message_text"),
-                            resultSet.getLong("time_posted_epoch")
-                    );
+                    return toMessage(resultSet);
                 } else {
                     // No message found with the given message_id
                     return null;
@@ -86,44 +134,80 @@ public class MessageDAO {
         }
     }
 
+    /**
+     * @return the messages with the given ids, keyed by id. Ids with no message are left out.
+     */
+    public Map<Integer, Message> getMessagesByIds(Collection<Integer> messageIds) throws SQLException {
+        Map<Integer, Message> messages = new HashMap<>();
+        if (messageIds.isEmpty()) {
+            return messages;
+        }
+
+        // A single array parameter keeps the SQL text the same for any number of ids
+        String query = "SELECT * FROM message WHERE message_id = ANY(?)";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setObject(1, messageIds.toArray(new Integer[0]));
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (resultSet.next()) {
+                    Message message = toMessage(resultSet);
+                    messages.put(message.getMessage_id(), message);
+                }
+            }
+        }
+        return messages;
+    }
+
     public List<Message> getAllMessages() throws SQLException {
         List<Message> messages = new ArrayList<>();
 
         String query = "SELECT * FROM message";
-        try (PreparedStatement stmt = connection.prepareStatement(query);
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query);
              ResultSet resultSet = stmt.executeQuery()) {
 
             while (resultSet.next()) {
                 // Create and add a Message object to the list
-                Message message = new Message(
-                        resultSet.getInt("message_id"),
-                        resultSet.getInt("posted_by"),
-                        resultSet.getString("message_text"),
-                        resultSet.getLong("time_posted_epoch")
-                );
-                messages.add(message);
+                messages.add(toMessage(resultSet));
             }
         }
 
         return messages;
     }
 
+    /**
+     * Passes every message to consumer as it is read, without collecting them into a list. The query runs with H2's
+     * lazy execution so rows are produced as the cursor advances instead of being materialized up front; the
+     * connection stays borrowed until the consumer has seen the last row.
+     */
+    public void forEachMessage(Consumer<Message> consumer) throws SQLException {
+        String query = "SELECT * FROM message";
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            setLazyQueryExecution(connection, true);
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setFetchSize(streamFetchSize);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(toMessage(resultSet));
+                    }
+                }
+            } finally {
+                setLazyQueryExecution(connection, false);
+            }
+        }
+    }
+
     public List<Message> getMessagesByAccountId(int accountId) throws SQLException {
         List<Message> messages = new ArrayList<>();
 
-        String query = "SELECT * FROM message WHERE posted_by = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        String query = "SELECT * FROM message WHERE posted_by = ? ORDER BY message_id";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
             stmt.setInt(1, accountId);
             try (ResultSet resultSet = stmt.executeQuery()) {
                 while (resultSet.next()) {
                     // Create and add a Message object to the list
-                    Message message = new Message(
-                            resultSet.getInt("message_id"),
-                            resultSet.getInt("posted_by"),
-                            resultSet.getString("message_text"),
-                            resultSet.getLong("time_posted_epoch")
-                    );
-                    messages.add(message);
+                    messages.add(toMessage(resultSet));
                 }
             }
         }
@@ -131,57 +215,97 @@ public class MessageDAO {
         return messages;
     }
 
-    public Message updateMessageText(int messageId, String newText) throws SQLException {
-        // Ensure the new text is not blank and not over 255 characters
-    if (newText == null || newText.trim().isEmpty() || newText.length() > 255) {
-        throw new IllegalArgumentException("Message text must be non-blank and under 255 characters.");
+    /**
+     * Returns up to limit messages with a message_id greater than afterMessageId, in message_id order. Seeking on the
+     * primary key means every page costs the same no matter how deep into the table it is.
+     */
+    public List<Message> getMessagesAfter(int afterMessageId, int limit) throws SQLException {
+        List<Message> messages = new ArrayList<>();
+
+        String query = "SELECT * FROM message WHERE message_id > ? ORDER BY message_id LIMIT ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setInt(1, afterMessageId);
+            stmt.setInt(2, limit);
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (resultSet.next()) {
+                    messages.add(toMessage(resultSet));
+                }
+            }
+        }
+
+        return messages;
     }
 
-    // Initialize variables to hold the existing message details
-    int postedBy = 0;
-    long timePostedEpoch = 0;
+    /**
+     * Returns up to limit of the account's messages with a message_id greater than afterMessageId, in message_id
+     * order.
+     */
+    public List<Message> getMessagesByAccountIdAfter(int accountId, int afterMessageId, int limit) throws SQLException {
+        List<Message> messages = new ArrayList<>();
 
-    // Check if the message exists before attempting the update
-    String selectQuery = "SELECT * FROM message WHERE message_id = ?";
-    try (PreparedStatement selectStmt = connection.prepareStatement(selectQuery)) {
-        selectStmt.setInt(1, messageId);
-        try (ResultSet resultSet = selectStmt.executeQuery()) {
-            if (!resultSet.next()) {
-                // Message does not exist, throw an exception
-                throw new SQLException("Message with the provided ID does not exist.");
+        String query = "SELECT * FROM message WHERE posted_by = ? AND message_id > ? ORDER BY message_id LIMIT ?";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setInt(1, accountId);
+            stmt.setInt(2, afterMessageId);
+            stmt.setInt(3, limit);
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (resultSet.next()) {
+                    messages.add(toMessage(resultSet));
+                }
             }
-            // Retrieve existing details from the ResultSet
-            postedBy = resultSet.getInt("posted_by");
-            timePostedEpoch = resultSet.getLong("time_posted_epoch");
         }
+
+        return messages;
     }
 
-    // Proceed with the update if the message exists
-    String updateQuery = "UPDATE message SET message_text = ? WHERE message_id = ?";
-    try (PreparedStatement updateStmt = connection.prepareStatement(updateQuery)) {
-        updateStmt.setString(1, newText);
-        updateStmt.setInt(2, messageId);
+    /**
+     * Updates the text of a message and returns the row as it is after the update, in one statement.
+     * @return the updated message, or null if no message has the given id
+     */
+    public Message updateMessageTextReturning(int messageId, String newText) throws SQLException {
+        validateText(newText);
 
-        int rowsUpdated = updateStmt.executeUpdate();
-        if (rowsUpdated > 0) {
-            // Return the updated message using the existing posted_by and time_posted_epoch
-            return new Message(messageId, postedBy, newText, timePostedEpoch);
-        } else {
-            throw new SQLException("Failed to update the message.");
+        String query = "SELECT * FROM FINAL TABLE (UPDATE message SET message_text = ? WHERE message_id = ?)";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
+            stmt.setString(1, newText);
+            stmt.setInt(2, messageId);
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                return resultSet.next() ? toMessage(resultSet) : null;
+            }
         }
     }
-    }
 
-    public boolean deleteMessageById(int messageId) throws SQLException {
-        String deleteQuery = "DELETE FROM message WHERE message_id = ?";
-        
-        try (PreparedStatement stmt = connection.prepareStatement(deleteQuery)) {
+    /**
+     * Deletes a message and returns the row as it was before the delete, in one statement.
+     * @return the deleted message, or null if no message has the given id
+     */
+    public Message deleteMessageByIdReturning(int messageId) throws SQLException {
+        String query = "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id = ?)";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(query)) {
             stmt.setInt(1, messageId);
-            
-            int rowsAffected = stmt.executeUpdate();
-            
-            // If rowsAffected is greater than 0, the message was deleted
-            return rowsAffected > 0;
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                return resultSet.next() ? toMessage(resultSet) : null;
+            }
         }
     }
+
+    private void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
+    }
+
+    // Maps the current row of a message query.
+    private Message toMessage(ResultSet resultSet) throws SQLException {
+        return new Message(
+                resultSet.getInt("message_id"),
+                resultSet.getInt("posted_by"),
+                resultSet.getString("message_text"),
+                resultSet.getLong("time_posted_epoch")
+        );
+    }
 }
@@ -1,4 +1,6 @@
 import Controller.SocialMediaController;
+import Util.Config;
+import Util.SchemaMigrator;
 import io.javalin.Javalin;
 
 /**
@@ -7,8 +9,12 @@ import io.javalin.Javalin;
  */
 public class Main {
     public static void main(String[] args) {
+        // Bring the schema up to date before serving requests
+        SchemaMigrator.migrate();
         SocialMediaController controller = new SocialMediaController();
         Javalin app = controller.startAPI();
-        app.start(8080);
+        app.start(Config.getInt("server.port", 8080));
+        // Stop cleanly on SIGTERM, so that work queued in the app is finished rather than dropped
+        Runtime.getRuntime().addShutdownHook(new Thread(app::stop, "shutdown"));
     }
 }
@@ -0,0 +1,84 @@
+package Model;
+
+/**
+ * This is a class that models the outcome of one item in a POST /messages/batch request. Results are returned in the
+ * same order as the submitted messages.
+ */
+public class MessageBatchResult {
+    /**
+     * The position of the message in the submitted array, starting at 0.
+     */
+    public int index;
+    /**
+     * 200 if the message was created, 400 if it was rejected.
+     */
+    public int status;
+    /**
+     * The created message, including its generated message_id. Null if the message was rejected.
+     */
+    public Message message;
+    /**
+     * Why the message was rejected. Null if it was created.
+     */
+    public String error;
+
+    public MessageBatchResult() {
+    }
+
+    public MessageBatchResult(int index, int status, Message message, String error) {
+        this.index = index;
+        this.status = status;
+        this.message = message;
+        this.error = error;
+    }
+
+    public static MessageBatchResult created(int index, Message message) {
+        return new MessageBatchResult(index, 200, message, null);
+    }
+
+    public static MessageBatchResult rejected(int index, String error) {
+        return new MessageBatchResult(index, 400, null, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageBatchResult{" +
+                "index=" + index +
+                ", status=" + status +
+                ", message=" + message +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
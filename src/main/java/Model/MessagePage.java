@@ -0,0 +1,50 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of a message listing. Pages are keyed on message_id: to fetch the next page,
+ * pass next_cursor back as the "after" query parameter. next_cursor is null on the last page.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, in ascending message_id order.
+     */
+    public List<Message> messages;
+    /**
+     * The message_id of the last message on this page, or null if there are no further messages.
+     */
+    public Integer next_cursor;
+
+    public MessagePage() {
+    }
+
+    public MessagePage(List<Message> messages, Integer next_cursor) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public Integer getNext_cursor() {
+        return next_cursor;
+    }
+
+    public void setNext_cursor(Integer next_cursor) {
+        this.next_cursor = next_cursor;
+    }
+
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", next_cursor=" + next_cursor +
+                '}';
+    }
+}
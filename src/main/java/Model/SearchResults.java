@@ -0,0 +1,64 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of message search results. To fetch the next page, pass next_offset back as
+ * the "offset" query parameter. next_offset is null on the last page.
+ */
+public class SearchResults {
+    /**
+     * The messages on this page, best match first.
+     */
+    public List<Message> messages;
+    /**
+     * The number of messages that matched the query, across all pages.
+     */
+    public int total;
+    /**
+     * The offset of the next page, or null if there are no further results.
+     */
+    public Integer next_offset;
+
+    public SearchResults() {
+    }
+
+    public SearchResults(List<Message> messages, int total, Integer next_offset) {
+        this.messages = messages;
+        this.total = total;
+        this.next_offset = next_offset;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public Integer getNext_offset() {
+        return next_offset;
+    }
+
+    public void setNext_offset(Integer next_offset) {
+        this.next_offset = next_offset;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResults{" +
+                "messages=" + messages +
+                ", total=" + total +
+                ", next_offset=" + next_offset +
+                '}';
+    }
+}
@@ -0,0 +1,62 @@
+package Model;
+
+/**
+ * This is a class that models the account behind a verified session token. It is rebuilt from the token itself, so
+ * reading it never touches the database.
+ */
+public class Session {
+    /**
+     * The id of the account that logged in.
+     */
+    public int account_id;
+    /**
+     * The username of the account at the time it logged in.
+     */
+    public String username;
+    /**
+     * When the token stops being accepted, in epoch seconds.
+     */
+    public long expires_at;
+
+    public Session() {
+    }
+
+    public Session(int account_id, String username, long expires_at) {
+        this.account_id = account_id;
+        this.username = username;
+        this.expires_at = expires_at;
+    }
+
+    public int getAccount_id() {
+        return account_id;
+    }
+
+    public void setAccount_id(int account_id) {
+        this.account_id = account_id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public long getExpires_at() {
+        return expires_at;
+    }
+
+    public void setExpires_at(long expires_at) {
+        this.expires_at = expires_at;
+    }
+
+    @Override
+    public String toString() {
+        return "Session{" +
+                "account_id=" + account_id +
+                ", username='" + username + '\'' +
+                ", expires_at=" + expires_at +
+                '}';
+    }
+}
@@ -1,13 +1,58 @@
 package Service;
 import DAO.AccountDAO;
 import Model.Account;
+import Util.BloomFilter;
+import Util.ConcurrentBitSet;
+import Util.Config;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class AccountService {
+    private static final Logger log = LoggerFactory.getLogger(AccountService.class);
+
     private AccountDAO accountDAO;
+    // Every account id known to exist. Accounts are never deleted, so a hit is always right; a miss falls back to
+    // the database in case the account was created elsewhere.
+    private final ConcurrentBitSet accountIds = new ConcurrentBitSet();
+    private final LongAdder accountIdHits = new LongAdder();
+    private final LongAdder accountIdMisses = new LongAdder();
+
+    // Answers "definitely not taken" for most free usernames without a query. Null if it could not be built, in
+    // which case every check goes to the database.
+    private volatile BloomFilter usernameFilter;
+    // The replacement filter while a background rebuild is running; new usernames are added to both
+    private volatile BloomFilter rebuildingFilter;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final double usernameFilterFalsePositiveRate = Double.parseDouble(
+            Config.getString("accounts.usernameFilter.falsePositiveRate", "0.01"));
+    private final long usernameFilterMinimumCapacity = Config.getLong("accounts.usernameFilter.minimumCapacity", 10000);
+    private final LongAdder usernameFilterNegatives = new LongAdder();
+    private final LongAdder usernameFilterPositives = new LongAdder();
+    private final LongAdder usernameFilterFalsePositives = new LongAdder();
 
     public AccountService(AccountDAO accountDAO) {
         this.accountDAO = accountDAO;
+        try {
+            accountDAO.forEachAccountId(accountIds::add);
+        } catch (SQLException e) {
+            // Start empty; every lookup will fall back to the database until the ids are learned
+            log.warn("Could not preload account ids", e);
+        }
+        try {
+            loadUsernameFilter();
+        } catch (SQLException e) {
+            log.warn("Could not build the username filter", e);
+        }
     }
 
     public Account registerAccount(Account account) throws SQLException {
@@ -21,21 +66,130 @@ public class AccountService {
             throw new IllegalArgumentException("Password must be at least 4 characters long.");
         }
     
-        // Check if the username already exists using the DAO method
-        if (accountDAO.doesUsernameExist(account.getUsername())) {
-            throw new IllegalArgumentException("Username already exists.");
-        }
-    
-        // Create the account using AccountDAO
-        return accountDAO.createAccount(account);
+        // Create the account using AccountDAO, which rejects a username that already exists
+        Account created = accountDAO.createAccount(account);
+        accountIds.add(created.getAccount_id());
+        addToUsernameFilter(created.getUsername());
+        return created;
     }
 
     public boolean doesUsernameExist(String username) throws SQLException {
-        return accountDAO.doesUsernameExist(username);
+        if (username == null) {
+            return false;
+        }
+        BloomFilter filter = usernameFilter;
+        if (filter != null && !filter.mightContain(username)) {
+            usernameFilterNegatives.increment();
+            return false;
+        }
+        usernameFilterPositives.increment();
+        boolean exists = accountDAO.doesUsernameExist(username);
+        if (filter != null && !exists) {
+            usernameFilterFalsePositives.increment();
+        }
+        return exists;
+    }
+
+    // Builds a filter from every username and makes it the current one. It is published before it stops being the
+    // rebuilding filter, so a registration always adds its username to whichever filter checks will read next.
+    private void loadUsernameFilter() throws SQLException {
+        long capacity = Math.max(usernameFilterMinimumCapacity, accountDAO.countAccounts() * 2);
+        BloomFilter filter = new BloomFilter(capacity, usernameFilterFalsePositiveRate);
+        rebuildingFilter = filter;
+        try {
+            accountDAO.forEachUsername(filter::add);
+            usernameFilter = filter;
+        } finally {
+            rebuildingFilter = null;
+        }
     }
 
-    public boolean doesUserExist(int accountId) throws SQLException {
-        return accountDAO.doesAccountIdExist(accountId);
+    private void addToUsernameFilter(String username) {
+        // Read the rebuilding filter first: if it is not set yet, the rebuild's scan has not started and will see
+        // this username, which is already committed
+        BloomFilter next = rebuildingFilter;
+        BloomFilter filter = usernameFilter;
+        if (next != null) {
+            next.add(username);
+        }
+        if (filter == null) {
+            return;
+        }
+        filter.add(username);
+        if (filter.isSaturated() && rebuildScheduled.compareAndSet(false, true)) {
+            // Past its capacity the false positive rate climbs quickly, so build a larger filter off the request path
+            Thread rebuild = new Thread(() -> {
+                try {
+                    loadUsernameFilter();
+                } catch (SQLException e) {
+                    log.warn("Could not rebuild the username filter", e);
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            }, "username-filter-rebuild");
+            rebuild.setDaemon(true);
+            rebuild.start();
+        }
+    }
+
+    /**
+     * @return the subset of ids that belong to an existing account. Only ids missing from the in-memory index are
+     * looked up in the database.
+     */
+    public Set<Integer> findExistingAccountIds(Collection<Integer> ids) throws SQLException {
+        Set<Integer> existing = new HashSet<>();
+        List<Integer> unknown = new ArrayList<>();
+        for (Integer id : ids) {
+            if (id != null && accountIds.contains(id)) {
+                existing.add(id);
+            } else {
+                unknown.add(id);
+            }
+        }
+        accountIdHits.add(existing.size());
+        if (!unknown.isEmpty()) {
+            accountIdMisses.add(unknown.size());
+            for (Integer id : accountDAO.findExistingAccountIds(unknown)) {
+                accountIds.add(id);
+                existing.add(id);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * @return size and hit counters for the in-memory account id index
+     */
+    public Map<String, Object> getAccountIdIndexMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", accountIds.cardinality());
+        metrics.put("sizeInBytes", accountIds.sizeInBytes());
+        metrics.put("hitCount", accountIdHits.sum());
+        metrics.put("missCount", accountIdMisses.sum());
+        return metrics;
+    }
+
+    /**
+     * @return size, fill and accuracy counters for the username Bloom filter
+     */
+    public Map<String, Object> getUsernameFilterMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        BloomFilter filter = usernameFilter;
+        metrics.put("enabled", filter != null);
+        if (filter != null) {
+            metrics.put("sizeInBytes", filter.sizeInBytes());
+            metrics.put("expectedInsertions", filter.getExpectedInsertions());
+            metrics.put("insertions", filter.getInsertions());
+            metrics.put("estimatedFalsePositiveRate", filter.estimatedFalsePositiveRate());
+        }
+        long negatives = usernameFilterNegatives.sum();
+        long falsePositives = usernameFilterFalsePositives.sum();
+        metrics.put("negativeCount", negatives);
+        metrics.put("databaseCheckCount", usernameFilterPositives.sum());
+        metrics.put("falsePositiveCount", falsePositives);
+        metrics.put("observedFalsePositiveRate",
+                negatives + falsePositives == 0 ? 0.0 : (double) falsePositives / (negatives + falsePositives));
+        return metrics;
     }
 
     public Account login(String username, String password) throws SQLException {
@@ -0,0 +1,96 @@
+package Service;
+
+/**
+ * A point-in-time snapshot of a GroupCommitWriter's settings and counters.
+ */
+public class GroupCommitStats {
+    private final int maxBatchSize;
+    private final long flushIntervalMillis;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long rejectedCount;
+    private final long batchCount;
+    private final long messageCount;
+    private final double averageBatchSize;
+    private final long largestBatchSize;
+    private final long averageFlushMicros;
+    private final long failedBatchCount;
+    private final long retriedMessageCount;
+
+    public GroupCommitStats(int maxBatchSize, long flushIntervalMillis, int queueDepth, int queueCapacity,
+            long rejectedCount, long batchCount, long messageCount, double averageBatchSize, long largestBatchSize, long averageFlushMicros,
+            long failedBatchCount, long retriedMessageCount) {
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.rejectedCount = rejectedCount;
+        this.batchCount = batchCount;
+        this.messageCount = messageCount;
+        this.averageBatchSize = averageBatchSize;
+        this.largestBatchSize = largestBatchSize;
+        this.averageFlushMicros = averageFlushMicros;
+        this.failedBatchCount = failedBatchCount;
+        this.retriedMessageCount = retriedMessageCount;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * @return messages waiting for the next flush
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return writes refused because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public double getAverageBatchSize() {
+        return averageBatchSize;
+    }
+
+    public long getLargestBatchSize() {
+        return largestBatchSize;
+    }
+
+    /**
+     * @return average time to write and commit one batch
+     */
+    public long getAverageFlushMicros() {
+        return averageFlushMicros;
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatchCount;
+    }
+
+    /**
+     * @return messages written again on their own after their batch failed
+     */
+    public long getRetriedMessageCount() {
+        return retriedMessageCount;
+    }
+}
@@ -0,0 +1,224 @@
+package Service;
+
+import Model.Message;
+import Model.MessageBatchResult;
+import java.sql.BatchUpdateException;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects message inserts from concurrent requests and writes them together, so a burst of POST /messages pays for
+ * one transaction commit per batch instead of one per message. A batch is flushed as soon as it holds maxBatchSize
+ * messages or flushIntervalMillis after its first message arrived, whichever comes first, so no caller waits longer
+ * than the flush interval plus the time to write one batch. If a batch fails because of particular rows, such as a
+ * posted_by that does not exist, its messages are written again one at a time, so that one bad message fails alone
+ * rather than taking the rest of its batch with it. Any other failure fails the whole batch. The queue is bounded, so
+ * once the database falls behind, new writes are refused at once instead of piling up in memory. close() writes
+ * whatever is still queued before stopping the writer's thread.
+ */
+public class GroupCommitWriter {
+
+    /**
+     * Writes one batch of messages, returning one result per message in the same order.
+     */
+    public interface BatchWriter {
+        List<MessageBatchResult> write(List<Message> messages) throws SQLException;
+    }
+
+    // Queued by close() to wake the flusher if it is waiting for work
+    private static final PendingWrite CLOSE = new PendingWrite(null);
+
+    private static class PendingWrite {
+        final Message message;
+        final CompletableFuture<MessageBatchResult> result = new CompletableFuture<>();
+
+        PendingWrite(Message message) {
+            this.message = message;
+        }
+    }
+
+    private final BatchWriter batchWriter;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final int queueCapacity;
+    private final LinkedBlockingQueue<PendingWrite> queue;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder messageCount = new LongAdder();
+    private final LongAdder failedBatchCount = new LongAdder();
+    private final LongAdder retriedMessageCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAccumulator largestBatch = new LongAccumulator(Long::max, 0);
+
+    public GroupCommitWriter(BatchWriter batchWriter, int maxBatchSize, long flushIntervalMillis, int queueCapacity) {
+        if (maxBatchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("maxBatchSize and queueCapacity must be at least 1.");
+        }
+        this.batchWriter = batchWriter;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.queueCapacity = queueCapacity;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+
+        this.flusher = new Thread(this::run, "message-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues the message for the next batch, without waiting for it to be written. The future is completed on the
+     * writer's own thread.
+     * @return the message's result from its batch, or the exception that prevented writing it: a
+     * RejectedExecutionException, straight away, if the queue is full or the writer has been closed
+     */
+    public CompletableFuture<MessageBatchResult> write(Message message) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Group commit writer is closed."));
+        }
+        PendingWrite pending = new PendingWrite(message);
+        if (!queue.offer(pending)) {
+            rejectedCount.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Group commit queue is full."));
+        }
+        // Closed meanwhile, perhaps after the flusher's last look at the queue. Whoever takes the write out of the
+        // queue completes it.
+        if (closed && queue.remove(pending)) {
+            pending.result.completeExceptionally(new RejectedExecutionException("Group commit writer is closed."));
+        }
+        return pending.result;
+    }
+
+    /**
+     * Stops accepting writes, writes everything already queued, and waits for the writer's thread to finish.
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        // If the queue is full the flusher is busy, and will see closed once it has emptied it
+        queue.offer(CLOSE);
+        flusher.join();
+        // Writes that were queued after the flusher's last look
+        for (PendingWrite pending = queue.poll(); pending != null; pending = queue.poll()) {
+            if (pending != CLOSE) {
+                pending.result.completeExceptionally(
+                        new RejectedExecutionException("Group commit writer is closed."));
+            }
+        }
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.take();
+                if (first == CLOSE) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null || next == CLOSE) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingWrite pending : batch) {
+            messages.add(pending.message);
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<MessageBatchResult> results = batchWriter.write(messages);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results.get(i));
+            }
+        } catch (Throwable e) {
+            failedBatchCount.increment();
+            if (batch.size() == 1 || !isRowFailure(e)) {
+                for (PendingWrite pending : batch) {
+                    pending.result.completeExceptionally(e);
+                }
+            } else {
+                // The batch was rolled back as a whole; find out which messages were at fault
+                for (PendingWrite pending : batch) {
+                    writeAlone(pending);
+                }
+            }
+        } finally {
+            flushNanos.add(System.nanoTime() - start);
+            batchCount.increment();
+            messageCount.add(batch.size());
+            largestBatch.accumulate(batch.size());
+        }
+    }
+
+    // Whether e blames particular rows, so that the others can succeed on their own. Anything else, such as a timeout
+    // waiting for a connection, would only fail again once per message on this one thread, and a failure raised after
+    // the commit would write the rows twice.
+    private static boolean isRowFailure(Throwable e) {
+        if (e instanceof IllegalArgumentException) {
+            // How the DAO reports a constraint violation
+            return true;
+        }
+        boolean rowFailure = false;
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientException || t instanceof SQLRecoverableException
+                    || t instanceof SQLNonTransientConnectionException) {
+                return false;
+            }
+            if (t instanceof BatchUpdateException || t instanceof SQLIntegrityConstraintViolationException
+                    || t instanceof SQLDataException) {
+                rowFailure = true;
+            }
+        }
+        return rowFailure;
+    }
+
+    private void writeAlone(PendingWrite pending) {
+        retriedMessageCount.increment();
+        try {
+            pending.result.complete(batchWriter.write(List.of(pending.message)).get(0));
+        } catch (Throwable e) {
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return the writer's settings and counters, for the admin endpoint
+     */
+    public GroupCommitStats getStats() {
+        long batches = batchCount.sum();
+        long messages = messageCount.sum();
+        return new GroupCommitStats(maxBatchSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos), queue.size(),
+                queueCapacity, rejectedCount.sum(), batches, messages, batches == 0 ? 0 : (double) messages / batches, largestBatch.get(),
+                batches == 0 ? 0 : flushNanos.sum() / batches / 1000, failedBatchCount.sum(),
+                retriedMessageCount.sum());
+    }
+}
@@ -0,0 +1,614 @@
+package Service;
+
+import Model.Message;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-memory inverted index over message_text, ranked with BM25. Text is split into lowercase runs of letters and
+ * digits. A query is a list of terms, each of which a message must contain; a term ending in * matches every indexed
+ * term that starts with it.
+ *
+ * Each term keeps a postings list of (message_id, generation, term frequency) in an append-only array. Updating a
+ * message appends fresh postings under a new generation rather than finding and removing the old ones, and deleting
+ * one only bumps its generation, so postings whose generation is no longer current are skipped by searches and
+ * dropped when a search finds a list mostly stale. Writes are serialized by one lock; searches take no lock, reading
+ * immutable snapshots of each list.
+ */
+public class MessageSearchIndex {
+
+    // Standard BM25 parameters: term frequency saturation and document length normalization
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Generations are stored in the upper 24 bits of a posting's second int, beside an 8 bit term frequency
+    private static final int GENERATION_MASK = 0xFFFFFF;
+    private static final int MAX_TERM_FREQUENCY = 0xFF;
+    // Longer runs are almost always noise such as URLs or hashes, and are not indexed
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private final ConcurrentSkipListMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final int maxPrefixTerms;
+
+    // Indexed by message_id. A length of 0 means the message is not in the index.
+    private volatile int[] lengths = new int[1024];
+    private volatile int[] generations = new int[1024];
+    private volatile int documentCount;
+    private volatile long totalLength;
+
+    /**
+     * @param maxPrefixTerms the most indexed terms a single prefix term may expand to
+     */
+    public MessageSearchIndex(int maxPrefixTerms) {
+        this.maxPrefixTerms = maxPrefixTerms;
+    }
+
+    /**
+     * Indexes message, replacing whatever was indexed for its message_id before.
+     */
+    public void add(Message message) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        int length = 0;
+        for (String term : tokenize(message.getMessage_text())) {
+            frequencies.merge(term, 1, Integer::sum);
+            length++;
+        }
+        int messageId = message.getMessage_id();
+
+        writeLock.lock();
+        try {
+            ensureCapacity(messageId);
+            int generation = removeLocked(messageId);
+            if (length == 0) {
+                return;
+            }
+            lengths[messageId] = length;
+            totalLength += length;
+            documentCount++;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), term -> new Postings())
+                        .append(messageId, generation, Math.min(entry.getValue(), MAX_TERM_FREQUENCY));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(int messageId) {
+        writeLock.lock();
+        try {
+            if (messageId >= 0 && messageId < lengths.length) {
+                removeLocked(messageId);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Retires the message's current postings and returns the generation to index it under next
+    private int removeLocked(int messageId) {
+        int length = lengths[messageId];
+        if (length > 0) {
+            lengths[messageId] = 0;
+            totalLength -= length;
+            documentCount--;
+        }
+        int generation = (generations[messageId] + 1) & GENERATION_MASK;
+        generations[messageId] = generation;
+        return generation;
+    }
+
+    private void ensureCapacity(int messageId) {
+        if (messageId < 0) {
+            throw new IllegalArgumentException("Message ids must not be negative.");
+        }
+        if (messageId >= lengths.length) {
+            int size = Math.max(messageId + 1, lengths.length * 2);
+            generations = Arrays.copyOf(generations, size);
+            lengths = Arrays.copyOf(lengths, size);
+        }
+    }
+
+    /**
+     * @return the ids of the best matching messages, best first, skipping offset of them, and the number of matches
+     * @throws IllegalArgumentException if the query has no terms
+     */
+    public Hits search(String query, int offset, int limit) {
+        List<Clause> clauses = parse(query);
+        // Read once, so that every score in this search uses the same statistics
+        int documents = documentCount;
+        long indexedLength = totalLength;
+        int[] currentLengths = lengths;
+        int[] currentGenerations = generations;
+        if (documents == 0) {
+            return new Hits(0, new int[0]);
+        }
+        double averageLength = (double) indexedLength / documents;
+
+        // Rarest clause first, so the candidate set starts, and stays, as small as possible
+        clauses.sort((a, b) -> Long.compare(a.postingCount(), b.postingCount()));
+        TopHits top = new TopHits((int) Math.min(Integer.MAX_VALUE, (long) offset + limit));
+        ScoreMap candidates = null;
+        for (int c = 0; c < clauses.size(); c++) {
+            Clause clause = clauses.get(c);
+            if (c == clauses.size() - 1 && clause.postings.size() == 1) {
+                // A plain term last: a message occurs in its list at most once, so final scores are known as the
+                // list is read and go straight to the ranking, without filling a ScoreMap with every match
+                Map.Entry<String, Postings> term = clause.postings.get(0);
+                scoreTerm(term.getKey(), term.getValue(), candidates, null, top, documents, averageLength,
+                        currentLengths, currentGenerations);
+                return new Hits(top.total(), top.ranked(offset));
+            }
+            // A broad first clause, such as a short prefix, is summed into an array over every message_id
+            ScoreMap scores = candidates != null ? ScoreMap.hashed(candidates.size())
+                    : clause.postingCount() > currentLengths.length / 8 ? ScoreMap.dense(currentLengths.length - 1)
+                    : ScoreMap.hashed(16);
+            for (Map.Entry<String, Postings> term : clause.postings) {
+                scoreTerm(term.getKey(), term.getValue(), candidates, scores, null, documents, averageLength,
+                        currentLengths, currentGenerations);
+            }
+            if (candidates != null) {
+                scores.addAll(candidates);
+            }
+            candidates = scores;
+            if (candidates.size() == 0) {
+                return new Hits(0, new int[0]);
+            }
+        }
+        candidates.offerAll(top);
+        return new Hits(top.total(), top.ranked(offset));
+    }
+
+    // Scores the term for every live message it occurs in, limited to candidates if given, and adds each score to
+    // scores or, together with the message's score in candidates, offers it to top
+    private void scoreTerm(String term, Postings postings, ScoreMap candidates, ScoreMap scores, TopHits top,
+            int documents, double averageLength, int[] currentLengths, int[] currentGenerations) {
+        Slice slice = postings.slice;
+        int[] data = slice.data;
+        // Stale postings are counted in the document frequency until compaction drops them, as deleted documents
+        // are in Lucene, which spares a second pass over the list
+        int frequencyInDocuments = Math.min(slice.size / 2, documents);
+        double idf = Math.log(1 + (documents - frequencyInDocuments + 0.5) / (frequencyInDocuments + 0.5));
+        int live = 0;
+        for (int i = 0; i < slice.size; i += 2) {
+            int messageId = data[i];
+            if (!isLive(messageId, data[i + 1], currentLengths, currentGenerations)) {
+                continue;
+            }
+            live++;
+            float previous = 0;
+            if (candidates != null) {
+                int slot = candidates.slotOf(messageId);
+                if (slot < 0) {
+                    continue;
+                }
+                previous = candidates.valueAt(slot);
+            }
+            int frequency = data[i + 1] & MAX_TERM_FREQUENCY;
+            double norm = K1 * (1 - B + B * currentLengths[messageId] / averageLength);
+            float score = (float) (idf * frequency * (K1 + 1) / (frequency + norm));
+            if (top != null) {
+                top.offer(messageId, previous + score);
+            } else {
+                scores.add(messageId, score);
+            }
+        }
+        if (live * 2 < slice.size / 2 && slice.size > 64) {
+            compact(term, postings);
+        }
+    }
+
+    private static boolean isLive(int messageId, int packed, int[] currentLengths, int[] currentGenerations) {
+        return messageId < currentLengths.length && currentLengths[messageId] > 0
+                && currentGenerations[messageId] == packed >>> 8;
+    }
+
+    // Rewrites a mostly stale postings list without its stale entries. Skipped if a write is in progress; the next
+    // search of the term will try again.
+    private void compact(String term, Postings postings) {
+        if (!writeLock.tryLock()) {
+            return;
+        }
+        try {
+            Slice slice = postings.slice;
+            int[] data = new int[Math.max(16, slice.size / 2)];
+            int size = 0;
+            for (int i = 0; i < slice.size; i += 2) {
+                if (isLive(slice.data[i], slice.data[i + 1], lengths, generations)) {
+                    if (size == data.length) {
+                        data = Arrays.copyOf(data, data.length * 2);
+                    }
+                    data[size++] = slice.data[i];
+                    data[size++] = slice.data[i + 1];
+                }
+            }
+            if (size == 0) {
+                terms.remove(term, postings);
+            }
+            postings.slice = new Slice(data, size);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        if (query != null) {
+            for (String word : query.trim().split("\\s+")) {
+                boolean prefix = word.endsWith("*");
+                List<String> tokens = tokenize(prefix ? word.substring(0, word.length() - 1) : word);
+                for (int i = 0; i < tokens.size(); i++) {
+                    clauses.add(prefix && i == tokens.size() - 1 ? prefixClause(tokens.get(i)) : termClause(tokens.get(i)));
+                }
+            }
+        }
+        if (clauses.isEmpty()) {
+            throw new IllegalArgumentException("The query has no searchable terms.");
+        }
+        return clauses;
+    }
+
+    private Clause termClause(String term) {
+        Postings postings = terms.get(term);
+        List<Map.Entry<String, Postings>> matches = new ArrayList<>(1);
+        if (postings != null) {
+            matches.add(Map.entry(term, postings));
+        }
+        return new Clause(matches);
+    }
+
+    private Clause prefixClause(String prefix) {
+        NavigableMap<String, Postings> range = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        List<Map.Entry<String, Postings>> matches = new ArrayList<>();
+        for (Map.Entry<String, Postings> entry : range.entrySet()) {
+            if (matches.size() == maxPrefixTerms) {
+                break;
+            }
+            matches.add(entry);
+        }
+        return new Clause(matches);
+    }
+
+    /**
+     * @return the lowercase runs of letters and digits in text, in order
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    tokens.add(lower.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @return counters for the admin endpoint
+     */
+    public Map<String, Object> getMetrics() {
+        long postings = 0;
+        for (Postings list : terms.values()) {
+            postings += list.slice.size / 2;
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("documents", documentCount);
+        metrics.put("terms", terms.size());
+        metrics.put("postings", postings);
+        return metrics;
+    }
+
+    /**
+     * One page of search results.
+     */
+    public static class Hits {
+        private final int total;
+        private final int[] messageIds;
+
+        Hits(int total, int[] messageIds) {
+            this.total = total;
+            this.messageIds = messageIds;
+        }
+
+        /**
+         * @return every message that matched, not just those on this page
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        public int[] getMessageIds() {
+            return messageIds;
+        }
+    }
+
+    // The postings one query term matches: one list for a plain term, any number for a prefix
+    private static class Clause {
+        final List<Map.Entry<String, Postings>> postings;
+
+        Clause(List<Map.Entry<String, Postings>> postings) {
+            this.postings = postings;
+        }
+
+        long postingCount() {
+            long count = 0;
+            for (Map.Entry<String, Postings> entry : postings) {
+                count += entry.getValue().slice.size / 2;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * A term's postings, as pairs of ints: message_id, then generation << 8 | term frequency. Appended to only under
+     * the write lock, each append publishing a new Slice; a search reads one Slice and sees a consistent list.
+     */
+    private static class Postings {
+        volatile Slice slice = new Slice(new int[4], 0);
+
+        void append(int messageId, int generation, int frequency) {
+            Slice current = slice;
+            int[] data = current.data;
+            if (current.size + 2 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[current.size] = messageId;
+            data[current.size + 1] = generation << 8 | frequency;
+            slice = new Slice(data, current.size + 2);
+        }
+    }
+
+    private static class Slice {
+        final int[] data;
+        final int size;
+
+        Slice(int[] data, int size) {
+            this.data = data;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A map from message_id (always positive) to score, so scoring a common term allocates two arrays rather than an
+     * object per match. Open addressing by default; dense, a score array indexed by message_id, when the matches are
+     * expected to cover enough of the id range that hashing them would cost more than the array.
+     */
+    private static class ScoreMap {
+        // Null when dense
+        private int[] keys;
+        private float[] values;
+        private int size;
+
+        private ScoreMap(int[] keys, float[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        static ScoreMap hashed(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            return new ScoreMap(new int[capacity], new float[capacity]);
+        }
+
+        // Scores are always positive, so a zero marks an absent key
+        static ScoreMap dense(int maxKey) {
+            return new ScoreMap(null, new float[maxKey + 1]);
+        }
+
+        int size() {
+            return size;
+        }
+
+        // The slot holding key, or -1 if it is not in the map
+        int slotOf(int key) {
+            if (keys == null) {
+                return key < values.length && values[key] != 0 ? key : -1;
+            }
+            int slot = slot(keys, key);
+            return keys[slot] == key ? slot : -1;
+        }
+
+        float valueAt(int slot) {
+            return values[slot];
+        }
+
+        void add(int key, float value) {
+            if (keys == null) {
+                if (values[key] == 0) {
+                    size++;
+                }
+                values[key] += value;
+                return;
+            }
+            int slot = slot(keys, key);
+            if (keys[slot] == key) {
+                values[slot] += value;
+                return;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+        }
+
+        // Adds the scores other holds for the keys already in this map, all of which it must hold
+        void addAll(ScoreMap other) {
+            for (int i = 0; i < values.length; i++) {
+                int key = keyAt(i);
+                if (key != 0) {
+                    values[i] += other.valueAt(other.slotOf(key));
+                }
+            }
+        }
+
+        void offerAll(TopHits top) {
+            for (int i = 0; i < values.length; i++) {
+                int key = keyAt(i);
+                if (key != 0) {
+                    top.offer(key, values[i]);
+                }
+            }
+        }
+
+        // The key in slot, or 0 if the slot is empty
+        private int keyAt(int slot) {
+            if (keys == null) {
+                return values[slot] != 0 ? slot : 0;
+            }
+            return keys[slot];
+        }
+
+        private static int slot(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            float[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new float[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the best `wanted` of the messages offered to it, by score and then newest first, in a min-heap with the
+     * worst of them at the root. Counts every offer, for the total.
+     */
+    private static class TopHits {
+        private final int wanted;
+        private int[] ids;
+        private float[] scores;
+        private int size;
+        private int total;
+
+        TopHits(int wanted) {
+            this.wanted = wanted;
+            // Grown as needed, so a large offset with few matches does not allocate the whole heap up front
+            ids = new int[Math.min(wanted, 64)];
+            scores = new float[ids.length];
+        }
+
+        void offer(int id, float score) {
+            total++;
+            if (size < wanted) {
+                if (size == ids.length) {
+                    grow();
+                }
+                ids[size] = id;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (better(id, score, ids[0], scores[0])) {
+                ids[0] = id;
+                scores[0] = score;
+                siftDown();
+            }
+        }
+
+        private void grow() {
+            int length = (int) Math.min(wanted, ids.length * 2L);
+            ids = Arrays.copyOf(ids, length);
+            scores = Arrays.copyOf(scores, length);
+        }
+
+        int total() {
+            return total;
+        }
+
+        /**
+         * @return the ids kept, best first, skipping offset of them
+         */
+        int[] ranked(int offset) {
+            int count = size;
+            if (offset >= count) {
+                return new int[0];
+            }
+            // Popping the worst repeatedly fills the ranking from the back
+            int[] ranked = new int[count];
+            for (int n = count - 1; n >= 0; n--) {
+                ranked[n] = ids[0];
+                size--;
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown();
+            }
+            return Arrays.copyOfRange(ranked, offset, count);
+        }
+
+        private static boolean better(int idA, float scoreA, int idB, float scoreB) {
+            if (scoreA != scoreB) {
+                return scoreA > scoreB;
+            }
+            return idA > idB;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!better(ids[parent], scores[parent], ids[index], scores[index])) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown() {
+            int index = 0;
+            while (true) {
+                int worst = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && better(ids[worst], scores[worst], ids[left], scores[left])) {
+                    worst = left;
+                }
+                if (right < size && better(ids[worst], scores[worst], ids[right], scores[right])) {
+                    worst = right;
+                }
+                if (worst == index) {
+                    return;
+                }
+                swap(worst, index);
+                index = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -1,54 +1,549 @@
 package Service;
+import DAO.AccountDAO;
 import DAO.MessageDAO;
 import Model.Message;
+import Model.MessageBatchResult;
+import Model.MessagePage;
+import Model.SearchResults;
+import Util.Config;
+import Util.StripedLocks;
+import Util.StripedVersions;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import java.sql.*;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 
 public class MessageService {
+    private static final Logger log = LoggerFactory.getLogger(MessageService.class);
+
     private MessageDAO messageDAO = new MessageDAO();
+    private AccountService accountService;
+    // Set when group commit is enabled; single creates are then queued and written in batches
+    private GroupCommitWriter groupCommitWriter;
+    // Rows per query when forEachMessage streams the whole table
+    private final int streamChunkSize = Config.getInt("messages.stream.chunkSize", 500);
+    // Read-through cache for getMessageById. Entries are invalidated when a message is updated or deleted.
+    private final Cache<Integer, Message> messageCache = Caffeine.newBuilder()
+            .maximumSize(Config.getLong("messages.cache.maximumSize", 10000))
+            .expireAfterWrite(Duration.ofSeconds(Config.getLong("messages.cache.ttlSeconds", 300)))
+            .recordStats()
+            .build();
+    // Per-account timelines in message_id order. Instead of being invalidated, a cached timeline is patched in place
+    // by every create, update and delete, so a heavy reader keeps hitting the cache while the account posts. Patches
+    // for one message are serialized by messageLocks; see patchFromDatabase. Bounded by an approximate memory budget;
+    // the coldest timelines are evicted first.
+    private final Cache<Integer, List<Message>> timelineCache = Caffeine.newBuilder()
+            .maximumWeight(Config.getLong("messages.timelineCache.maximumBytes", 64L * 1024 * 1024))
+            .weigher((Integer accountId, List<Message> timeline) -> estimateBytes(timeline))
+            .recordStats()
+            .build();
+    // Bumped after every committed write, before the caches are touched. A cache load that started before a write
+    // sees the bump and does not store what may be a stale result.
+    private final AtomicLong writeGeneration = new AtomicLong();
+    // Held while the caches are patched for one message, so that patches for it apply one at a time
+    private final StripedLocks messageLocks = new StripedLocks(1024);
+    // Bumped by every update and delete patch, under its message's lock. A create that sees it unchanged since before
+    // its insert knows no update or delete of its message has been patched in yet.
+    private final AtomicLong patchGeneration = new AtomicLong();
+    // Change whenever a message, or any message in an account's timeline, is written through this service. They
+    // start from zero in every process, so version tags also carry an epoch chosen at startup.
+    private final StripedVersions messageVersions = new StripedVersions(Config.getInt("messages.etag.stripes", 16384));
+    private final StripedVersions timelineVersions = new StripedVersions(Config.getInt("messages.etag.stripes", 16384));
+    private final String versionEpoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    // Full-text index over every message, kept in step by create, update and delete under messageLocks. Null when search is disabled or
+    // the index could not be built.
+    private MessageSearchIndex searchIndex;
+
+    public MessageService() {
+        this(new AccountService(new AccountDAO()));
+    }
+
+    public MessageService(AccountService accountService) {
+        this.accountService = accountService;
+        if (Config.getBoolean("messages.groupCommit.enabled", false)) {
+            this.groupCommitWriter = new GroupCommitWriter(this::createMessages,
+                    Config.getInt("messages.groupCommit.maxBatchSize", 100),
+                    Config.getLong("messages.groupCommit.flushIntervalMillis", 2),
+                    Config.getInt("messages.groupCommit.queueSize", 1000));
+        }
+        if (Config.getBoolean("messages.search.enabled", true)) {
+            MessageSearchIndex index = new MessageSearchIndex(Config.getInt("messages.search.maxPrefixTerms", 1000));
+            try {
+                messageDAO.forEachMessage(index::add);
+                searchIndex = index;
+            } catch (SQLException e) {
+                log.warn("Could not build the message search index; search is disabled", e);
+            }
+        }
+    }
 
     public Message createMessage(Message message) throws SQLException {
         // Validate message fields
-        if (message.getMessage_text() == null || message.getMessage_text().trim().isEmpty()) {
-            throw new IllegalArgumentException("Message text cannot be blank.");
+        String error = validateText(message);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
         }
-        if (message.getMessage_text().length() > 255) {
-            throw new IllegalArgumentException("Message text cannot exceed 255 characters.");
+
+        if (groupCommitWriter != null) {
+            // Wait for the batch this message was written in
+            try {
+                return submitMessage(message).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new SQLException("Group commit failed.", cause);
+            }
         }
 
-        // Validate user existence
-        if (!messageDAO.doesUserExist(message.getPosted_by())) {
-            throw new IllegalArgumentException("User does not exist.");
+        // The DAO rejects a posted_by that does not exist
+        long patchesBefore = patchGeneration.get();
+        Message created = messageDAO.createMessage(message);
+        cacheCreated(created, patchesBefore);
+        return created;
+    }
+
+    /**
+     * Queues the message for the next group commit, without waiting for it to be written. Only for use when
+     * isGroupCommitEnabled() is true.
+     * @return the created message, or a future failed with IllegalArgumentException if the text is invalid or the
+     * poster does not exist, with RejectedExecutionException if too many writes are already queued, or with
+     * SQLException if the insert failed
+     */
+    public CompletableFuture<Message> submitMessage(Message message) {
+        String error = validateText(message);
+        if (error != null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(error));
         }
+        return groupCommitWriter.write(message).thenApply(result -> {
+            if (result.getStatus() != 200) {
+                throw new IllegalArgumentException(result.getError());
+            }
+            return result.getMessage();
+        });
+    }
+
+    public boolean isGroupCommitEnabled() {
+        return groupCommitWriter != null;
+    }
 
-        return messageDAO.createMessage(message);
+    /**
+     * Writes any messages still queued for group commit and stops its thread. Call once no more requests can arrive.
+     */
+    public void close() {
+        if (groupCommitWriter == null) {
+            return;
+        }
+        try {
+            groupCommitWriter.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Validates every message, then inserts the valid ones with a single JDBC batch. Account ids are checked with one
+     * query for the whole batch rather than one per message.
+     * @return one result per submitted message, in the same order
+     */
+    public List<MessageBatchResult> createMessages(List<Message> messages) throws SQLException {
+        Set<Integer> postedBy = new HashSet<>();
+        for (Message message : messages) {
+            postedBy.add(message.getPosted_by());
+        }
+        Set<Integer> existingAccounts = accountService.findExistingAccountIds(postedBy);
+
+        MessageBatchResult[] results = new MessageBatchResult[messages.size()];
+        List<Message> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            String error = validateText(message);
+            if (error == null && !existingAccounts.contains(message.getPosted_by())) {
+                error = "User does not exist.";
+            }
+            if (error != null) {
+                results[i] = MessageBatchResult.rejected(i, error);
+            } else {
+                valid.add(message);
+                validIndexes.add(i);
+            }
+        }
+
+        long patchesBefore = patchGeneration.get();
+        List<Message> created = messageDAO.createMessages(valid);
+        for (int i = 0; i < created.size(); i++) {
+            results[validIndexes.get(i)] = MessageBatchResult.created(validIndexes.get(i), created.get(i));
+            cacheCreated(created.get(i), patchesBefore);
+        }
+        return List.of(results);
+    }
+
+    /**
+     * @return group commit counters, or null if group commit is disabled
+     */
+    public GroupCommitStats getGroupCommitStats() {
+        return groupCommitWriter == null ? null : groupCommitWriter.getStats();
+    }
+
+    /**
+     * @return hit and size counters for the getMessageById cache
+     */
+    public CacheMetrics getMessageCacheMetrics() {
+        return CacheMetrics.of(messageCache);
+    }
+
+    /**
+     * @return hit and size counters for the per-account timeline cache
+     */
+    public CacheMetrics getTimelineCacheMetrics() {
+        return CacheMetrics.of(timelineCache);
+    }
+
+    // A new message is likely to be read soon, so cache it and add it to its author's cached timeline. The caller
+    // keeps its own instance. patchesBefore is patchGeneration as it was before the insert.
+    private void cacheCreated(Message message, long patchesBefore) {
+        writeGeneration.incrementAndGet();
+        Message copy = copyOf(message);
+        Lock lock = messageLocks.get(copy.getMessage_id());
+        lock.lock();
+        try {
+            if (patchGeneration.get() != patchesBefore) {
+                // An update or delete of the new message may have been patched in already, and is newer than this
+                patchFromDatabase(copy.getMessage_id(), copy.getPosted_by());
+            } else {
+                messageCache.put(copy.getMessage_id(), copy);
+                timelineCache.asMap().computeIfPresent(copy.getPosted_by(),
+                        (accountId, timeline) -> withMessage(timeline, copy));
+                if (searchIndex != null) {
+                    searchIndex.add(copy);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        bumpVersions(copy);
+    }
+
+    // Brings the caches and the search index into line with a message's committed row, after an update or delete. Two writes to one message
+    // can reach here in the opposite order to their commits, so rather than applying its own result each patch takes
+    // the message's lock and then reads the row again: the last patch to run always sees the last commit, and a
+    // message deleted meanwhile is dropped rather than put back.
+    private void patchCaches(int messageId, int accountId) {
+        Lock lock = messageLocks.get(messageId);
+        lock.lock();
+        try {
+            patchFromDatabase(messageId, accountId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Call holding the message's lock
+    private void patchFromDatabase(int messageId, int accountId) {
+        patchGeneration.incrementAndGet();
+        messageCache.invalidate(messageId);
+        Message current;
+        try {
+            current = messageDAO.getMessageById(messageId);
+        } catch (SQLException e) {
+            // The write itself has committed; fall back to reloading the timeline when it is next read. The search
+            // index keeps what it had, which can only cost ranking: results are read through messageCache, so they
+            // show the current text and leave out deleted messages.
+            log.warn("Could not re-read message {} after writing it; invalidating its timeline", messageId, e);
+            timelineCache.invalidate(accountId);
+            return;
+        }
+        if (current == null) {
+            timelineCache.asMap().computeIfPresent(accountId,
+                    (id, timeline) -> withoutMessage(timeline, messageId));
+            if (searchIndex != null) {
+                searchIndex.remove(messageId);
+            }
+        } else {
+            timelineCache.asMap().computeIfPresent(current.getPosted_by(),
+                    (id, timeline) -> withMessage(timeline, current));
+            if (searchIndex != null) {
+                searchIndex.add(current);
+            }
+        }
+    }
+
+    // Only once the write is visible in the database and the caches, so a new tag never labels old data
+    private void bumpVersions(Message message) {
+        messageVersions.bump(message.getMessage_id());
+        timelineVersions.bump(message.getPosted_by());
+    }
+
+    /**
+     * @return an opaque tag that changes whenever the message is created, updated or deleted. Read it before reading
+     * the message, so that a write landing in between makes the tag stale rather than the data.
+     */
+    public String getMessageVersionTag(int messageId) {
+        return versionEpoch + "-m" + messageId + "-" + messageVersions.get(messageId);
+    }
+
+    /**
+     * @return an opaque tag that changes whenever one of the account's messages is created, updated or deleted
+     */
+    public String getTimelineVersionTag(int accountId) {
+        return versionEpoch + "-a" + accountId + "-" + timelineVersions.get(accountId);
+    }
+
+    // Message is mutable, so cached instances never leave this class: callers get copies they are free to modify
+    private static Message copyOf(Message message) {
+        return new Message(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                message.getTime_posted_epoch());
+    }
+
+    private static List<Message> copiesOf(List<Message> messages) {
+        List<Message> copies = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            copies.add(copyOf(message));
+        }
+        return copies;
+    }
+
+    // Returns a copy of the timeline with message inserted in message_id order, replacing any message with the same
+    // id. Replacing rather than appending makes this safe to apply to a timeline that was loaded after the write.
+    private static List<Message> withMessage(List<Message> timeline, Message message) {
+        List<Message> updated = new ArrayList<>(timeline.size() + 1);
+        int i = 0;
+        while (i < timeline.size() && timeline.get(i).getMessage_id() < message.getMessage_id()) {
+            updated.add(timeline.get(i++));
+        }
+        updated.add(message);
+        if (i < timeline.size() && timeline.get(i).getMessage_id() == message.getMessage_id()) {
+            i++;
+        }
+        while (i < timeline.size()) {
+            updated.add(timeline.get(i++));
+        }
+        return Collections.unmodifiableList(updated);
+    }
+
+    private static List<Message> withoutMessage(List<Message> timeline, int messageId) {
+        List<Message> updated = new ArrayList<>(timeline.size());
+        for (Message message : timeline) {
+            if (message.getMessage_id() != messageId) {
+                updated.add(message);
+            }
+        }
+        return Collections.unmodifiableList(updated);
+    }
+
+    // Rough heap cost of a cached timeline: list overhead plus each Message and its text.
+    private static int estimateBytes(List<Message> timeline) {
+        long bytes = 64;
+        for (Message message : timeline) {
+            bytes += 80 + 2L * (message.getMessage_text() == null ? 0 : message.getMessage_text().length());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    // Returns why the message's text is invalid, or null if it is valid.
+    private String validateText(Message message) {
+        if (message.getMessage_text() == null || message.getMessage_text().trim().isEmpty()) {
+            return "Message text cannot be blank.";
+        }
+        if (message.getMessage_text().length() > 255) {
+            return "Message text cannot exceed 255 characters.";
+        }
+        return null;
     }
 
     public List<Message> getAllMessages() throws SQLException {
         return messageDAO.getAllMessages();
     }
 
+    /**
+     * Passes every message to consumer in message_id order, without collecting them into one list. Messages are read
+     * streamChunkSize at a time, each chunk with its own short keyset query, so no connection stays borrowed while
+     * the consumer works and a slow one, such as a response going to a slow client, holds none. The chunks are not one
+     * snapshot: a message written while the listing runs may or may not appear in it.
+     */
+    public void forEachMessage(Consumer<Message> consumer) throws SQLException {
+        int afterMessageId = 0;
+        while (true) {
+            List<Message> chunk = messageDAO.getMessagesAfter(afterMessageId, streamChunkSize);
+            chunk.forEach(consumer);
+            if (chunk.size() < streamChunkSize) {
+                return;
+            }
+            afterMessageId = chunk.get(chunk.size() - 1).getMessage_id();
+        }
+    }
+
     public Message getMessageById(int messageId) throws SQLException {
-        return messageDAO.getMessageById(messageId);
+        // Missing messages are not cached
+        Message message = getOrLoad(messageCache, messageId, messageDAO::getMessageById);
+        return message == null ? null : copyOf(message);
     }
 
+    /**
+     * @return the account's messages in message_id order, copied out of the cache
+     */
     public List<Message> getMessagesByUserId(int accountId) throws SQLException {
-        return messageDAO.getMessagesByAccountId(accountId);
+        return copiesOf(getOrLoad(timelineCache, accountId,
+                id -> Collections.unmodifiableList(messageDAO.getMessagesByAccountId(id))));
+    }
+
+    /**
+     * Reads through a cache, running the query outside of the cache's locks. Caffeine's own get(key, loader) holds a
+     * monitor for the whole load, which would pin a virtual thread to its carrier for the length of the query.
+     * Concurrent misses on one key may each run the query; only a result loaded with no write since it started is
+     * stored.
+     */
+    private <V> V getOrLoad(Cache<Integer, V> cache, int key, Loader<V> loader) throws SQLException {
+        V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = writeGeneration.get();
+        V loaded = loader.load(key);
+        if (loaded != null) {
+            cache.asMap().compute(key, (k, current) ->
+                    current != null || writeGeneration.get() != generation ? current : loaded);
+        }
+        return loaded;
     }
 
-    public boolean deleteMessageById(int messageId) throws SQLException {
-        return messageDAO.deleteMessageById(messageId);
+    private interface Loader<V> {
+        V load(int key) throws SQLException;
     }
 
-    public Message updateMessage(Message message) throws SQLException {
-        try {
-            return messageDAO.updateMessageText(message.getMessage_id(), message.getMessage_text());
-        } catch (SQLException e) {
-            if (e.getMessage().contains("does not exist")) {
-                throw new IllegalArgumentException("Message not found.");
+    public MessagePage getMessagesPage(int afterMessageId, int limit) throws SQLException {
+        // Fetch one extra row to learn whether there is a next page
+        return toPage(messageDAO.getMessagesAfter(afterMessageId, limit + 1), limit);
+    }
+
+    public MessagePage getMessagesByUserIdPage(int accountId, int afterMessageId, int limit) throws SQLException {
+        List<Message> timeline = timelineCache.getIfPresent(accountId);
+        if (timeline != null) {
+            // Serve the page from the cached timeline
+            List<Message> page = new ArrayList<>(Math.min(timeline.size(), limit + 1));
+            for (Message message : timeline) {
+                if (message.getMessage_id() > afterMessageId) {
+                    page.add(copyOf(message));
+                    if (page.size() > limit) {
+                        break;
+                    }
+                }
             }
-            throw e;
+            return toPage(page, limit);
+        }
+        return toPage(messageDAO.getMessagesByAccountIdAfter(accountId, afterMessageId, limit + 1), limit);
+    }
+
+    private MessagePage toPage(List<Message> messages, int limit) {
+        if (messages.size() <= limit) {
+            return new MessagePage(messages, null);
+        }
+        List<Message> page = messages.subList(0, limit);
+        return new MessagePage(page, page.get(limit - 1).getMessage_id());
+    }
+
+    public boolean isSearchEnabled() {
+        return searchIndex != null;
+    }
+
+    /**
+     * Finds the messages containing every term of query, best match first. The index only supplies ids; the messages
+     * themselves are read through the message cache, with one query for all of the page's misses, so a result always
+     * shows the current text, and one deleted since it was ranked is left out.
+     * @return up to limit results after skipping offset of them
+     * @throws IllegalArgumentException if the query has no searchable terms
+     * @throws IllegalStateException if search is disabled
+     */
+    public SearchResults searchMessages(String query, int offset, int limit) throws SQLException {
+        if (searchIndex == null) {
+            throw new IllegalStateException("Message search is disabled.");
+        }
+        MessageSearchIndex.Hits hits = searchIndex.search(query, offset, limit);
+        int[] messageIds = hits.getMessageIds();
+        Message[] found = new Message[messageIds.length];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < messageIds.length; i++) {
+            found[i] = messageCache.getIfPresent(messageIds[i]);
+            if (found[i] == null) {
+                missing.add(messageIds[i]);
+            }
+        }
+        if (!missing.isEmpty()) {
+            // One query for every cache miss on the page, stored under the same guard as getOrLoad
+            long generation = writeGeneration.get();
+            Map<Integer, Message> loaded = messageDAO.getMessagesByIds(missing);
+            for (int i = 0; i < messageIds.length; i++) {
+                Message message = found[i] == null ? loaded.get(messageIds[i]) : null;
+                if (message != null) {
+                    found[i] = message;
+                    messageCache.asMap().compute(messageIds[i], (k, current) ->
+                            current != null || writeGeneration.get() != generation ? current : message);
+                }
+            }
+        }
+        List<Message> messages = new ArrayList<>(messageIds.length);
+        for (Message message : found) {
+            if (message != null) {
+                messages.add(copyOf(message));
+            }
+        }
+        int nextOffset = offset + messageIds.length;
+        return new SearchResults(messages, hits.getTotal(), nextOffset < hits.getTotal() ? nextOffset : null);
+    }
+
+    /**
+     * @return document, term and posting counts for the search index, or null if search is disabled
+     */
+    public Map<String, Object> getSearchIndexMetrics() {
+        return searchIndex == null ? null : searchIndex.getMetrics();
+    }
+
+    /**
+     * @return the deleted message, or null if there was no message with that id
+     */
+    public Message deleteMessageById(int messageId) throws SQLException {
+        Message deleted = messageDAO.deleteMessageByIdReturning(messageId);
+        writeGeneration.incrementAndGet();
+        messageCache.invalidate(messageId);
+        if (deleted != null) {
+            patchCaches(messageId, deleted.getPosted_by());
+            bumpVersions(deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * @return the updated message, or null if there was no message with that id
+     */
+    public Message updateMessageText(int messageId, String newText) throws SQLException {
+        Message updated = messageDAO.updateMessageTextReturning(messageId, newText);
+        writeGeneration.incrementAndGet();
+        messageCache.invalidate(messageId);
+        if (updated != null) {
+            patchCaches(messageId, updated.getPosted_by());
+            bumpVersions(updated);
         }
+        return updated;
     }
 }
@@ -0,0 +1,207 @@
+package Service;
+import Model.Account;
+import Model.Session;
+import Util.Config;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Issues and checks session tokens. A token is the account id, username, expiry and a random nonce, signed with
+ * HMAC-SHA256, so checking one is a hash over a few dozen bytes rather than a query. Logged-out tokens are kept in a
+ * revocation set until they would have expired anyway.
+ */
+public class SessionService {
+    private static final Logger log = LoggerFactory.getLogger(SessionService.class);
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+    private final SecureRandom random = new SecureRandom();
+    // Mac instances are not thread safe, and creating one per request costs more than the HMAC itself. They are
+    // pooled rather than kept per thread because a virtual thread lives for one request.
+    private final ConcurrentLinkedQueue<Mac> macs = new ConcurrentLinkedQueue<>();
+    // Nonces of logged-out tokens, mapped to their expiry in epoch seconds. An entry is only dropped once its token
+    // has expired, so a revoked token can never become valid again. The bound protects the heap: once it is reached
+    // and no entry has expired, further logouts are refused rather than forgetting earlier ones.
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private final long maximumRevocations;
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder revocations = new LongAdder();
+
+    public SessionService() {
+        this(Config.getString("sessions.secret", ""), Config.getLong("sessions.ttlSeconds", 3600),
+                Config.getLong("sessions.revocation.maximumSize", 100000));
+    }
+
+    /**
+     * @param secret the signing key. If blank, a random key is generated and tokens do not survive a restart.
+     */
+    public SessionService(String secret, long ttlSeconds, long maximumRevocations) {
+        byte[] keyBytes;
+        if (secret == null || secret.isEmpty()) {
+            log.warn("sessions.secret is not set; using a random key, so sessions will not survive a restart");
+            keyBytes = new byte[32];
+            random.nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+        macs.add(newMac()); // fail at startup rather than on the first login if HMAC-SHA256 is unavailable
+        this.maximumRevocations = maximumRevocations;
+    }
+
+    /**
+     * @return a token for account, which must have come from a successful login
+     */
+    public String issue(Account account) {
+        byte[] nonce = new byte[12];
+        random.nextBytes(nonce);
+        long expiresAt = System.currentTimeMillis() / 1000 + ttlSeconds;
+        String payload = account.getAccount_id() + "\n" + expiresAt + "\n" + ENCODER.encodeToString(nonce) + "\n"
+                + account.getUsername();
+        String encodedPayload = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        issued.increment();
+        return encodedPayload + "." + ENCODER.encodeToString(sign(encodedPayload));
+    }
+
+    /**
+     * @return the session the token was issued for, or null if the token is malformed, forged, expired or revoked
+     */
+    public Session verify(String token) {
+        Token parsed = parse(token);
+        if (parsed == null || revoked.containsKey(parsed.nonce)) {
+            rejected.increment();
+            return null;
+        }
+        accepted.increment();
+        return parsed.session;
+    }
+
+    /**
+     * Stops the token from being accepted. Revoking a token that does not verify does nothing.
+     * @return true if the token was valid and is now revoked
+     * @throws IllegalStateException if sessions.revocation.maximumSize unexpired tokens are already revoked
+     */
+    public boolean revoke(String token) {
+        Token parsed = parse(token);
+        if (parsed == null) {
+            return false;
+        }
+        if (revoked.size() >= maximumRevocations) {
+            removeExpiredRevocations();
+            if (revoked.size() >= maximumRevocations) {
+                log.error("Refusing to revoke a session: " + revoked.size()
+                        + " unexpired sessions are already revoked; raise sessions.revocation.maximumSize");
+                throw new IllegalStateException("Too many revoked sessions.");
+            }
+        }
+        // Keyed on the nonce, which is covered by the signature, so no re-encoding of the token escapes revocation
+        revoked.put(parsed.nonce, parsed.session.getExpires_at());
+        revocations.increment();
+        return true;
+    }
+
+    /**
+     * @return counters for the admin endpoint
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("ttlSeconds", ttlSeconds);
+        metrics.put("issued", issued.sum());
+        metrics.put("accepted", accepted.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("revocations", revocations.sum());
+        metrics.put("revokedTokens", revoked.size());
+        return metrics;
+    }
+
+    // Expired tokens fail verification on their own, so their revocations are no longer needed
+    private void removeExpiredRevocations() {
+        long now = System.currentTimeMillis() / 1000;
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    // Checks the signature and expiry, ignoring revocation
+    private Token parse(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.lastIndexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        String encodedPayload = token.substring(0, dot);
+        String encodedSignature = token.substring(dot + 1);
+        try {
+            byte[] signature = DECODER.decode(encodedSignature);
+            // The decoder also accepts padding and ignores the unused low bits of the last character, so several
+            // spellings decode to the same bytes. Only the one issue() produces is accepted.
+            if (!ENCODER.encodeToString(signature).equals(encodedSignature)
+                    || !MessageDigest.isEqual(signature, sign(encodedPayload))) {
+                return null;
+            }
+            String[] fields = new String(DECODER.decode(encodedPayload), StandardCharsets.UTF_8).split("\n", 4);
+            if (fields.length != 4) {
+                return null;
+            }
+            long expiresAt = Long.parseLong(fields[1]);
+            if (expiresAt <= System.currentTimeMillis() / 1000) {
+                return null;
+            }
+            return new Token(new Session(Integer.parseInt(fields[0]), fields[3], expiresAt), fields[2]);
+        } catch (IllegalArgumentException e) {
+            // Bad base64 or a bad number; only possible with a correct signature if the key leaked
+            return null;
+        }
+    }
+
+    // A token that passed parse, and the nonce that identifies it for revocation
+    private static class Token {
+        final Session session;
+        final String nonce;
+
+        Token(Session session, String nonce) {
+            this.session = session;
+            this.nonce = nonce;
+        }
+    }
+
+    private byte[] sign(String encodedPayload) {
+        Mac mac = macs.poll();
+        if (mac == null) {
+            mac = newMac();
+        }
+        try {
+            return mac.doFinal(encodedPayload.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            macs.offer(mac);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available.", e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe Bloom filter over strings. mightContain() never returns false for a string that was added, and
+ * returns true for a string that was not added with roughly the configured false positive rate, as long as no more
+ * than the expected number of strings have been added. Bits are set with compare-and-set, so adds and lookups never
+ * block each other.
+ */
+public class BloomFilter {
+
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+	private final long expectedInsertions;
+	private final LongAdder insertions = new LongAdder();
+
+	/**
+	 * Sizes the filter so that after expectedInsertions adds, lookups of absent strings return true with probability
+	 * falsePositiveRate.
+	 */
+	public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+		if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+			throw new IllegalArgumentException("expectedInsertions must be positive and falsePositiveRate in (0, 1).");
+		}
+		long bitsNeeded = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		int words = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (bitsNeeded + 63) >>> 6));
+		this.bits = new AtomicLongArray(words);
+		this.bitCount = (long) words * 64;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+		this.expectedInsertions = expectedInsertions;
+	}
+
+	public void add(String value) {
+		long hash = hash64(value);
+		long h1 = mix(hash);
+		long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			setBit(Long.remainderUnsigned(h1 + i * h2, bitCount));
+		}
+		insertions.increment();
+	}
+
+	/**
+	 * @return false if value was definitely never added, true if it may have been
+	 */
+	public boolean mightContain(String value) {
+		long hash = hash64(value);
+		long h1 = mix(hash);
+		long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+			if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void setBit(long bit) {
+		int index = (int) (bit >>> 6);
+		long mask = 1L << bit;
+		long word;
+		do {
+			word = bits.get(index);
+			if ((word & mask) != 0) {
+				return;
+			}
+		} while (!bits.compareAndSet(index, word, word | mask));
+	}
+
+	/**
+	 * @return true once more strings have been added than the filter was sized for
+	 */
+	public boolean isSaturated() {
+		return insertions.sum() > expectedInsertions;
+	}
+
+	public long getInsertions() {
+		return insertions.sum();
+	}
+
+	public long getExpectedInsertions() {
+		return expectedInsertions;
+	}
+
+	/**
+	 * @return the false positive rate the filter currently gives, estimated from the fraction of bits set
+	 */
+	public double estimatedFalsePositiveRate() {
+		long set = 0;
+		for (int i = 0; i < bits.length(); i++) {
+			set += Long.bitCount(bits.get(i));
+		}
+		return Math.pow((double) set / bitCount, hashCount);
+	}
+
+	public long sizeInBytes() {
+		return bitCount / 8;
+	}
+
+	// 64-bit FNV-1a over the string's chars
+	private static long hash64(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	// Murmur3's 64-bit finalizer, to spread FNV's low-entropy high bits
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,96 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A growable set of non-negative ints stored as a bitmap, one bit per possible value. Reads are lock free and never
+ * allocate, which makes membership tests cheap enough to sit on every request path. Values can be added but not
+ * removed. Memory is proportional to the largest value stored, so this suits dense ids such as auto-increment keys.
+ */
+public class ConcurrentBitSet {
+
+	private volatile AtomicLongArray words;
+
+	public ConcurrentBitSet() {
+		this(1024);
+	}
+
+	public ConcurrentBitSet(int initialCapacity) {
+		words = new AtomicLongArray(Math.max(1, (initialCapacity + 63) >>> 6));
+	}
+
+	/**
+	 * @return true if value has been added
+	 */
+	public boolean contains(int value) {
+		if (value < 0) {
+			return false;
+		}
+		AtomicLongArray current = words;
+		int index = value >>> 6;
+		return index < current.length() && (current.get(index) & (1L << value)) != 0;
+	}
+
+	public void add(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Only non-negative values can be stored.");
+		}
+		int index = value >>> 6;
+		long bit = 1L << value;
+		AtomicLongArray current = words;
+		while (true) {
+			if (index >= current.length()) {
+				current = grow(index);
+			}
+			setBit(current, index, bit);
+			// If the array was replaced while we were writing, the copy may have missed our bit
+			AtomicLongArray latest = words;
+			if (latest == current) {
+				return;
+			}
+			current = latest;
+		}
+	}
+
+	private static void setBit(AtomicLongArray array, int index, long bit) {
+		long word;
+		do {
+			word = array.get(index);
+			if ((word & bit) != 0) {
+				return;
+			}
+		} while (!array.compareAndSet(index, word, word | bit));
+	}
+
+	private synchronized AtomicLongArray grow(int index) {
+		AtomicLongArray current = words;
+		if (index < current.length()) {
+			return current;
+		}
+		AtomicLongArray larger = new AtomicLongArray(Math.max(index + 1, current.length() * 2));
+		for (int i = 0; i < current.length(); i++) {
+			larger.set(i, current.get(i));
+		}
+		words = larger;
+		return larger;
+	}
+
+	/**
+	 * @return the number of values in the set
+	 */
+	public int cardinality() {
+		AtomicLongArray current = words;
+		int count = 0;
+		for (int i = 0; i < current.length(); i++) {
+			count += Long.bitCount(current.get(i));
+		}
+		return count;
+	}
+
+	/**
+	 * @return the approximate heap used by the bitmap
+	 */
+	public long sizeInBytes() {
+		return (long) words.length() * Long.BYTES;
+	}
+}
@@ -0,0 +1,54 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * The Config class reads tunable settings for the application. Values are looked up first in the JVM system
+ * properties (eg -Ddb.pool.maxSize=20) and then in application.properties on the classpath, falling back to the
+ * default passed in by the caller.
+ */
+public class Config {
+
+	/**
+	 * Settings loaded from application.properties, if the file is present.
+	 */
+	private static final Properties properties = new Properties();
+
+	static {
+		try (InputStream in = Config.class.getClassLoader().getResourceAsStream("application.properties")) {
+			if (in != null) {
+				properties.load(in);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private Config() {
+	}
+
+	/**
+	 * @return the configured value for key, or defaultValue if it is not set
+	 */
+	public static String getString(String key, String defaultValue) {
+		String value = System.getProperty(key);
+		if (value == null) {
+			value = properties.getProperty(key);
+		}
+		return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+	}
+
+	public static int getInt(String key, int defaultValue) {
+		return Integer.parseInt(getString(key, Integer.toString(defaultValue)));
+	}
+
+	public static long getLong(String key, long defaultValue) {
+		return Long.parseLong(getString(key, Long.toString(defaultValue)));
+	}
+
+	public static boolean getBoolean(String key, boolean defaultValue) {
+		return Boolean.parseBoolean(getString(key, Boolean.toString(defaultValue)));
+	}
+}
@@ -0,0 +1,361 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of physical JDBC connections. Callers borrow a connection with getConnection() and hand it back by
+ * calling close() on it, so DAO methods should open their connection in a try-with-resources block.
+ *
+ * At most maxSize connections exist at once; a caller that cannot get one within the acquire timeout receives an
+ * SQLTransientConnectionException. A background housekeeper closes connections that have sat idle for longer than the
+ * idle timeout (never dropping below minSize) and logs connections that have been held for longer than the leak
+ * threshold, naming the borrowing thread and, if captureBorrowSites is set, the borrower's stack trace. Each physical
+ * connection keeps an LRU cache of its prepared statements, so a DAO that prepares the same SQL on every call reuses
+ * the already parsed and planned statement. When given a QueryTimer, every statement the pool hands out is timed by
+ * it. No synchronized blocks are held while waiting, so borrowers may safely be virtual threads.
+ */
+public class ConnectionPool {
+
+	private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+	private final DataSource dataSource;
+	private final int minSize;
+	private final int maxSize;
+	private final long acquireTimeoutMillis;
+	private final long idleTimeoutMillis;
+	private final long leakThresholdMillis;
+	// Capturing a stack trace costs more than the rest of a borrow, so it is left to debugging sessions
+	private final boolean captureBorrowSites;
+	private final int statementCacheSize;
+	private final QueryTimer queryTimer;
+
+	/**
+	 * One permit per connection that may still be handed out. Fair so that waiters are served in arrival order.
+	 */
+	private final Semaphore permits;
+	/**
+	 * Idle connections, most recently returned first so that warm connections are reused.
+	 */
+	private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+	private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger total = new AtomicInteger();
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	private final LongAdder acquireCount = new LongAdder();
+	private final LongAdder acquireNanos = new LongAdder();
+	private final LongAccumulator maxAcquireNanos = new LongAccumulator(Long::max, 0);
+	private final LongAdder timeoutCount = new LongAdder();
+	private final LongAdder createdCount = new LongAdder();
+	private final LongAdder closedCount = new LongAdder();
+	private final LongAdder leakCount = new LongAdder();
+	private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+
+	private final ScheduledExecutorService housekeeper;
+
+	/**
+	 * @param captureBorrowSites whether to record a stack trace on every borrow, so a leak report shows where the
+	 *                           connection was taken
+	 * @param queryTimer times every statement executed on the pool's connections, or null for no timing
+	 */
+	public ConnectionPool(DataSource dataSource, int minSize, int maxSize, long acquireTimeoutMillis,
+			long idleTimeoutMillis, long leakThresholdMillis, boolean captureBorrowSites, int statementCacheSize,
+			QueryTimer queryTimer) {
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+			throw new IllegalArgumentException("Pool size must satisfy 0 <= minSize <= maxSize and maxSize >= 1.");
+		}
+		this.dataSource = dataSource;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.leakThresholdMillis = leakThresholdMillis;
+		this.captureBorrowSites = captureBorrowSites;
+		this.statementCacheSize = statementCacheSize;
+		this.queryTimer = queryTimer;
+		this.permits = new Semaphore(maxSize, true);
+
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "connection-pool-housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1000, Math.min(idleTimeoutMillis, leakThresholdMillis > 0 ? leakThresholdMillis : Long.MAX_VALUE) / 2);
+		housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return a connection borrowed from the pool. Closing it returns it to the pool.
+	 */
+	public Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		waiting.incrementAndGet();
+		boolean acquired;
+		try {
+			acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted while waiting for a connection.", e);
+		} finally {
+			waiting.decrementAndGet();
+		}
+		if (!acquired) {
+			timeoutCount.increment();
+			throw new SQLTransientConnectionException("Timed out after " + acquireTimeoutMillis
+					+ "ms waiting for a connection (active=" + borrowed.size() + ", max=" + maxSize + ").");
+		}
+
+		PooledConnection pooled;
+		try {
+			pooled = takeIdleOrCreate();
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+
+		long elapsed = System.nanoTime() - start;
+		acquireCount.increment();
+		acquireNanos.add(elapsed);
+		maxAcquireNanos.accumulate(elapsed);
+
+		pooled.borrowedAt = System.currentTimeMillis();
+		pooled.borrower = Thread.currentThread();
+		pooled.borrowSite = captureBorrowSites && leakThresholdMillis > 0
+				? new Throwable("Connection borrowed here") : null;
+		borrowed.add(pooled);
+		return pooled.lease();
+	}
+
+	private PooledConnection takeIdleOrCreate() throws SQLException {
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			if (!pooled.physical.isClosed()) {
+				return pooled;
+			}
+			discard(pooled);
+		}
+		return create();
+	}
+
+	private PooledConnection create() throws SQLException {
+		Connection physical = dataSource.getConnection();
+		total.incrementAndGet();
+		createdCount.increment();
+		return new PooledConnection(physical);
+	}
+
+	/**
+	 * Called when a lease is closed. Resets per-borrower state so the next borrower gets a clean connection.
+	 */
+	private void release(PooledConnection pooled) {
+		borrowed.remove(pooled);
+		pooled.borrower = null;
+		pooled.borrowSite = null;
+		try {
+			if (pooled.physical.isClosed()) {
+				discard(pooled);
+			} else {
+				if (!pooled.physical.getAutoCommit()) {
+					pooled.physical.rollback();
+					pooled.physical.setAutoCommit(true);
+				}
+				pooled.lastReturnedAt = System.currentTimeMillis();
+				idle.offerFirst(pooled);
+			}
+		} catch (SQLException e) {
+			discard(pooled);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void discard(PooledConnection pooled) {
+		total.decrementAndGet();
+		closedCount.increment();
+		pooled.statements.closeAll();
+		try {
+			pooled.physical.close();
+		} catch (SQLException e) {
+			log.debug("Error closing pooled connection", e);
+		}
+	}
+
+	/**
+	 * Evicts connections idle for longer than the idle timeout, tops the pool back up to minSize and reports leaks.
+	 */
+	private void housekeep() {
+		try {
+			long now = System.currentTimeMillis();
+			for (PooledConnection pooled : idle) {
+				if (total.get() <= minSize) {
+					break;
+				}
+				if (now - pooled.lastReturnedAt > idleTimeoutMillis && idle.remove(pooled)) {
+					discard(pooled);
+				}
+			}
+			while (total.get() < minSize && permits.tryAcquire()) {
+				try {
+					PooledConnection pooled = create();
+					pooled.lastReturnedAt = now;
+					idle.offerLast(pooled);
+				} finally {
+					permits.release();
+				}
+			}
+			if (leakThresholdMillis > 0) {
+				for (PooledConnection pooled : borrowed) {
+					Thread borrower = pooled.borrower;
+					if (borrower != null && now - pooled.borrowedAt > leakThresholdMillis && !pooled.leakReported) {
+						pooled.leakReported = true;
+						leakCount.increment();
+						String message = "Connection held for " + (now - pooled.borrowedAt) + "ms by " + borrower
+								+ ", possible leak";
+						Throwable site = pooled.borrowSite;
+						if (site != null) {
+							log.warn(message, site);
+						} else {
+							log.warn(message + " (set db.pool.captureBorrowSites=true to log where it was borrowed)");
+						}
+					}
+				}
+			}
+		} catch (Exception e) {
+			log.warn("Connection pool housekeeping failed", e);
+		}
+	}
+
+	/**
+	 * @return a point-in-time snapshot of the pool's counters
+	 */
+	public PoolStats getStats() {
+		long acquires = acquireCount.sum();
+		return new PoolStats(borrowed.size(), idle.size(), waiting.get(), total.get(), minSize, maxSize, acquires,
+				acquires == 0 ? 0 : acquireNanos.sum() / acquires / 1000, maxAcquireNanos.get() / 1000,
+				timeoutCount.sum(), createdCount.sum(), closedCount.sum(), leakCount.sum(),
+				statementCounters.hits.sum(), statementCounters.misses.sum(), statementCounters.evictions.sum());
+	}
+
+	/**
+	 * Closes every idle connection and stops the housekeeper. Borrowed connections are closed as they are returned.
+	 */
+	public void shutdown() {
+		housekeeper.shutdownNow();
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			discard(pooled);
+		}
+	}
+
+	/**
+	 * A physical connection owned by the pool, plus the bookkeeping needed to lend it out.
+	 */
+	private class PooledConnection {
+		final Connection physical;
+		final StatementCache statements;
+		volatile long borrowedAt;
+		volatile long lastReturnedAt;
+		// The borrowing thread, null while idle
+		volatile Thread borrower;
+		// Null unless captureBorrowSites is set
+		volatile Throwable borrowSite;
+		volatile boolean leakReported;
+
+		PooledConnection(Connection physical) {
+			this.physical = physical;
+			this.statements = new StatementCache(physical, statementCacheSize, statementCounters);
+		}
+
+		/**
+		 * @return a new handle for one borrower; the handle's close() returns the connection exactly once
+		 */
+		Connection lease() {
+			leakReported = false;
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new Lease(this));
+		}
+	}
+
+	private class Lease implements InvocationHandler {
+		private final PooledConnection pooled;
+		private volatile boolean closed;
+
+		Lease(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (!closed) {
+					closed = true;
+					release(pooled);
+				}
+				return null;
+			case "isClosed":
+				return closed || pooled.physical.isClosed();
+			case "prepareStatement":
+				if (closed) {
+					throw new SQLException("Connection has already been returned to the pool.");
+				}
+				PreparedStatement statement;
+				if (args.length == 1) {
+					statement = pooled.statements.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+				} else if (args.length == 2 && args[1] instanceof Integer) {
+					statement = pooled.statements.prepare((String) args[0], (Integer) args[1]);
+				} else {
+					statement = (PreparedStatement) invokePhysical(method, args);
+				}
+				return queryTimer == null ? statement : queryTimer.wrap(statement, (String) args[0]);
+			case "createStatement":
+				if (closed) {
+					throw new SQLException("Connection has already been returned to the pool.");
+				}
+				Statement plain = (Statement) invokePhysical(method, args);
+				return queryTimer == null ? plain : queryTimer.wrap(plain);
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "PooledConnection[" + pooled.physical + "]";
+			default:
+				if (closed) {
+					throw new SQLException("Connection has already been returned to the pool.");
+				}
+				return invokePhysical(method, args);
+			}
+		}
+
+		private Object invokePhysical(Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(pooled.physical, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
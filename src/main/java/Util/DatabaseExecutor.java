@@ -0,0 +1,92 @@
+package Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed set of threads for work that needs a database connection, in front of a queue of bounded depth. Sizing the
+ * threads to the connection pool keeps queued work off the pool's semaphore, and bounding the queue means that once
+ * the database falls behind, new work is refused immediately instead of waiting behind work that is already late.
+ */
+public class DatabaseExecutor {
+
+	private final ThreadPoolExecutor executor;
+	private final int queueCapacity;
+	private final LongAdder rejectedCount = new LongAdder();
+
+	public DatabaseExecutor(int threads, int queueCapacity) {
+		if (threads < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("threads and queueCapacity must be at least 1.");
+		}
+		this.queueCapacity = queueCapacity;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), r -> {
+					Thread thread = new Thread(r, "db-executor-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Queues task to run on one of the executor's threads.
+	 * @return a future that completes when task has run, exceptionally if it threw
+	 * @throws RejectedExecutionException if the queue is full or the executor has been shut down
+	 */
+	public CompletableFuture<Void> submit(Task task) {
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				try {
+					task.run();
+					done.complete(null);
+				} catch (Throwable e) {
+					done.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejectedCount.increment();
+			throw e;
+		}
+		return done;
+	}
+
+	/**
+	 * Work for the executor. May throw checked exceptions, which fail the future returned by submit().
+	 */
+	public interface Task {
+		void run() throws Exception;
+	}
+
+	/**
+	 * @return how many tasks the executor holds at most, running and queued
+	 */
+	public int getCapacity() {
+		return executor.getMaximumPoolSize() + queueCapacity;
+	}
+
+	/**
+	 * @return thread and queue counters for the admin endpoint
+	 */
+	public Map<String, Object> getMetrics() {
+		Map<String, Object> metrics = new LinkedHashMap<>();
+		metrics.put("threads", executor.getMaximumPoolSize());
+		metrics.put("active", executor.getActiveCount());
+		metrics.put("queued", executor.getQueue().size());
+		metrics.put("queueCapacity", queueCapacity);
+		metrics.put("completed", executor.getCompletedTaskCount());
+		metrics.put("rejected", rejectedCount.sum());
+		return metrics;
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
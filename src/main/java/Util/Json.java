@@ -0,0 +1,121 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import Model.Account;
+import Model.Message;
+import Model.MessagePage;
+import Model.SearchResults;
+
+/**
+ * The one ObjectMapper the application uses, with readers and writers for the request and response types built once
+ * up front. A reader or writer bound to a type skips the per-call type lookup that ObjectMapper.readValue and
+ * writeValueAsString do, and is safe to share between threads.
+ *
+ * Bodies are parsed straight from the request stream and written straight to bytes, so no intermediate String copy
+ * of the JSON is made in either direction. Setting json.blackbird.enabled replaces Jackson's reflective field
+ * access with generated accessors.
+ */
+public class Json {
+
+	private static final ObjectMapper mapper = createMapper();
+
+	private static final ObjectReader messageReader = mapper.readerFor(Message.class);
+	private static final ObjectReader accountReader = mapper.readerFor(Account.class);
+	private static final ObjectReader messageListReader = mapper.readerFor(new TypeReference<List<Message>>(){});
+	private static final ObjectWriter messageWriter = mapper.writerFor(Message.class);
+	private static final ObjectWriter accountWriter = mapper.writerFor(Account.class);
+	private static final ObjectWriter messageListWriter = mapper.writerFor(new TypeReference<List<Message>>(){});
+	private static final ObjectWriter messagePageWriter = mapper.writerFor(MessagePage.class);
+	private static final ObjectWriter searchResultsWriter = mapper.writerFor(SearchResults.class);
+	// Writes one message at a time into a streaming generator; flushing is left to the caller
+	private static final ObjectWriter streamingMessageWriter = messageWriter
+			.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+	private Json() {
+	}
+
+	private static ObjectMapper createMapper() {
+		ObjectMapper objectMapper = new ObjectMapper();
+		if (Config.getBoolean("json.blackbird.enabled", false)) {
+			objectMapper.registerModule(new BlackbirdModule());
+		}
+		return objectMapper;
+	}
+
+	/**
+	 * @return the shared mapper, for types without a dedicated reader or writer
+	 */
+	public static ObjectMapper mapper() {
+		return mapper;
+	}
+
+	public static Message readMessage(InputStream in) throws IOException {
+		return messageReader.readValue(in);
+	}
+
+	public static Account readAccount(InputStream in) throws IOException {
+		return accountReader.readValue(in);
+	}
+
+	public static List<Message> readMessages(InputStream in) throws IOException {
+		return messageListReader.readValue(in);
+	}
+
+	public static byte[] writeMessage(Message message) {
+		return write(() -> messageWriter.writeValueAsBytes(message));
+	}
+
+	public static byte[] writeAccount(Account account) {
+		return write(() -> accountWriter.writeValueAsBytes(account));
+	}
+
+	public static byte[] writeMessages(List<Message> messages) {
+		return write(() -> messageListWriter.writeValueAsBytes(messages));
+	}
+
+	public static byte[] writeMessagePage(MessagePage page) {
+		return write(() -> messagePageWriter.writeValueAsBytes(page));
+	}
+
+	public static byte[] writeSearchResults(SearchResults results) {
+		return write(() -> searchResultsWriter.writeValueAsBytes(results));
+	}
+
+	/**
+	 * @return value as JSON, for types without a dedicated writer
+	 */
+	public static byte[] writeValue(Object value) {
+		return write(() -> mapper.writeValueAsBytes(value));
+	}
+
+	// Serializing the model classes only fails on a bug, so don't make every handler catch IOException
+	private static byte[] write(Serializer serializer) {
+		try {
+			return serializer.serialize();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private interface Serializer {
+		byte[] serialize() throws IOException;
+	}
+
+	/**
+	 * @return a writer for Message suited to writing many values into one generator, as when streaming a listing
+	 */
+	public static ObjectWriter streamingMessageWriter() {
+		return streamingMessageWriter;
+	}
+}
@@ -0,0 +1,130 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of a ConnectionPool's counters. Getters are named so that Jackson renders the snapshot as
+ * JSON for the admin endpoint.
+ */
+public class PoolStats {
+	private final int active;
+	private final int idle;
+	private final int waiting;
+	private final int total;
+	private final int minSize;
+	private final int maxSize;
+	private final long acquireCount;
+	private final long averageAcquireMicros;
+	private final long maxAcquireMicros;
+	private final long timeoutCount;
+	private final long createdCount;
+	private final long closedCount;
+	private final long leakCount;
+	private final long statementCacheHits;
+	private final long statementCacheMisses;
+	private final long statementCacheEvictions;
+
+	public PoolStats(int active, int idle, int waiting, int total, int minSize, int maxSize, long acquireCount,
+			long averageAcquireMicros, long maxAcquireMicros, long timeoutCount, long createdCount, long closedCount,
+			long leakCount, long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+		this.active = active;
+		this.idle = idle;
+		this.waiting = waiting;
+		this.total = total;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.acquireCount = acquireCount;
+		this.averageAcquireMicros = averageAcquireMicros;
+		this.maxAcquireMicros = maxAcquireMicros;
+		this.timeoutCount = timeoutCount;
+		this.createdCount = createdCount;
+		this.closedCount = closedCount;
+		this.leakCount = leakCount;
+		this.statementCacheHits = statementCacheHits;
+		this.statementCacheMisses = statementCacheMisses;
+		this.statementCacheEvictions = statementCacheEvictions;
+	}
+
+	/**
+	 * @return connections currently borrowed
+	 */
+	public int getActive() {
+		return active;
+	}
+
+	/**
+	 * @return open connections waiting in the pool to be borrowed
+	 */
+	public int getIdle() {
+		return idle;
+	}
+
+	/**
+	 * @return callers currently blocked waiting for a connection
+	 */
+	public int getWaiting() {
+		return waiting;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getAcquireCount() {
+		return acquireCount;
+	}
+
+	public long getAverageAcquireMicros() {
+		return averageAcquireMicros;
+	}
+
+	public long getMaxAcquireMicros() {
+		return maxAcquireMicros;
+	}
+
+	/**
+	 * @return callers that gave up after the acquire timeout
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount;
+	}
+
+	public long getCreatedCount() {
+		return createdCount;
+	}
+
+	public long getClosedCount() {
+		return closedCount;
+	}
+
+	/**
+	 * @return connections reported as held for longer than the leak threshold
+	 */
+	public long getLeakCount() {
+		return leakCount;
+	}
+
+	/**
+	 * @return prepareStatement calls served from a connection's statement cache
+	 */
+	public long getStatementCacheHits() {
+		return statementCacheHits;
+	}
+
+	/**
+	 * @return prepareStatement calls that had to parse and plan the SQL
+	 */
+	public long getStatementCacheMisses() {
+		return statementCacheMisses;
+	}
+
+	public long getStatementCacheEvictions() {
+		return statementCacheEvictions;
+	}
+}
@@ -0,0 +1,87 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of one SQL statement's execution counters, as collected by QueryTimer. Getters are named
+ * so that Jackson renders the snapshot as JSON for the admin endpoint. Percentiles come from histogram buckets and
+ * are accurate to within 25%.
+ */
+public class QueryStats {
+	private final String sql;
+	private final long count;
+	private final long errorCount;
+	private final long slowCount;
+	private final long totalMicros;
+	private final long maxMicros;
+	private final long p50Micros;
+	private final long p95Micros;
+	private final long p99Micros;
+	private final long rows;
+
+	public QueryStats(String sql, long count, long errorCount, long slowCount, long totalMicros, long maxMicros,
+			long p50Micros, long p95Micros, long p99Micros, long rows) {
+		this.sql = sql;
+		this.count = count;
+		this.errorCount = errorCount;
+		this.slowCount = slowCount;
+		this.totalMicros = totalMicros;
+		this.maxMicros = maxMicros;
+		this.p50Micros = p50Micros;
+		this.p95Micros = p95Micros;
+		this.p99Micros = p99Micros;
+		this.rows = rows;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return executions, including those that failed
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * @return executions over the slow query threshold
+	 */
+	public long getSlowCount() {
+		return slowCount;
+	}
+
+	public long getTotalMicros() {
+		return totalMicros;
+	}
+
+	public long getAverageMicros() {
+		return count == 0 ? 0 : totalMicros / count;
+	}
+
+	public long getMaxMicros() {
+		return maxMicros;
+	}
+
+	public long getP50Micros() {
+		return p50Micros;
+	}
+
+	public long getP95Micros() {
+		return p95Micros;
+	}
+
+	public long getP99Micros() {
+		return p99Micros;
+	}
+
+	/**
+	 * @return rows read from result sets for queries (0 when db.queryStats.countRows is false), or rows affected for
+	 * updates
+	 */
+	public long getRows() {
+		return rows;
+	}
+}
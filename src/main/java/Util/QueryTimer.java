@@ -0,0 +1,321 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times every statement execution on the connections it is installed on, and keeps per-SQL-text counters: executions,
+ * errors, total and maximum time, a latency histogram for percentiles, and rows returned or affected. Executions that
+ * take longer than the slow query threshold are logged with the SQL and the types of their bind parameters, never
+ * the values, since those are user data (and, for login, passwords).
+ *
+ * Statements are wrapped in a proxy that forwards every call, so the DAOs need no changes. The counters are
+ * LongAdders and an AtomicLongArray, so recording never blocks.
+ */
+public class QueryTimer {
+
+	private static final Logger log = LoggerFactory.getLogger(QueryTimer.class);
+
+	/**
+	 * Statements past maxStatements distinct SQL texts are counted together under this key, so SQL built with literal
+	 * values cannot grow the table without limit.
+	 */
+	static final String OTHER_SQL = "(other)";
+
+	// Log-linear histogram over microseconds: values below 4 get a bucket each, then every power of two is split into
+	// four buckets, so a bucket's upper bound is within 25% of any value in it. 160 buckets reach past 10^12 us.
+	private static final int BUCKETS = 160;
+
+	private final long slowThresholdNanos;
+	private final int maxStatements;
+	private final boolean countRows;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * @param slowThresholdMillis executions taking at least this long are logged; negative disables the log
+	 * @param maxStatements the most distinct SQL texts to keep counters for
+	 * @param countRows whether to count the rows read from query results. This puts every ResultSet call behind a
+	 *                  proxy, which on a listing costs more than the timing itself.
+	 */
+	public QueryTimer(long slowThresholdMillis, int maxStatements, boolean countRows) {
+		this.slowThresholdNanos = slowThresholdMillis < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+		this.maxStatements = maxStatements;
+		this.countRows = countRows;
+	}
+
+	/**
+	 * @return statement, timing each execution against sql
+	 */
+	public PreparedStatement wrap(PreparedStatement statement, String sql) {
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new TimedStatement(statement, sql));
+	}
+
+	/**
+	 * @return statement, timing each execution against the SQL passed to it
+	 */
+	public Statement wrap(Statement statement) {
+		return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+				new Class<?>[] { Statement.class }, new TimedStatement(statement, null));
+	}
+
+	/**
+	 * @return a snapshot of every statement's counters, the most total time first
+	 */
+	public List<QueryStats> getStats() {
+		List<QueryStats> stats = new ArrayList<>();
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			stats.add(entry.getValue().snapshot(entry.getKey()));
+		}
+		stats.sort((a, b) -> Long.compare(b.getTotalMicros(), a.getTotalMicros()));
+		return stats;
+	}
+
+	/**
+	 * Forgets every statement's counters, eg before a load test.
+	 */
+	public void reset() {
+		entries.clear();
+	}
+
+	private Entry entry(String sql) {
+		Entry entry = entries.get(sql);
+		if (entry == null) {
+			if (entries.size() >= maxStatements) {
+				sql = OTHER_SQL;
+			}
+			entry = entries.computeIfAbsent(sql, key -> new Entry());
+		}
+		return entry;
+	}
+
+	/**
+	 * Counters for one SQL text.
+	 */
+	private static class Entry {
+		final LongAdder count = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder slow = new LongAdder();
+		final LongAdder totalNanos = new LongAdder();
+		final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+		final LongAdder rows = new LongAdder();
+		final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+		void record(long nanos) {
+			count.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+			buckets.incrementAndGet(bucketOf(nanos / 1000));
+		}
+
+		QueryStats snapshot(String sql) {
+			long[] counts = new long[BUCKETS];
+			long total = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] = buckets.get(i);
+				total += counts[i];
+			}
+			long maxMicros = maxNanos.get() / 1000;
+			return new QueryStats(sql, count.sum(), errors.sum(), slow.sum(), totalNanos.sum() / 1000, maxMicros,
+					percentile(counts, total, 0.50, maxMicros), percentile(counts, total, 0.95, maxMicros),
+					percentile(counts, total, 0.99, maxMicros), rows.sum());
+		}
+	}
+
+	static int bucketOf(long micros) {
+		if (micros < 4) {
+			return (int) Math.max(0, micros);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) (micros >>> (exponent - 2)) & 3;
+		return Math.min(BUCKETS - 1, (exponent - 1) * 4 + sub);
+	}
+
+	static long upperBoundOf(int bucket) {
+		if (bucket < 4) {
+			return bucket;
+		}
+		int exponent = bucket / 4 + 1;
+		long lower = (4L + bucket % 4) << (exponent - 2);
+		return lower + (1L << (exponent - 2)) - 1;
+	}
+
+	private static long percentile(long[] counts, long total, double fraction, long maxMicros) {
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(fraction * total);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), maxMicros);
+			}
+		}
+		return maxMicros;
+	}
+
+	private class TimedStatement implements InvocationHandler {
+		private final Statement statement;
+		// Null for a plain Statement, whose SQL comes with each execute call
+		private final String sql;
+		// Bind parameters by index, kept only to describe their types if the execution is slow
+		private Object[] parameters = new Object[0];
+
+		TimedStatement(Statement statement, String sql) {
+			this.statement = statement;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.startsWith("execute")) {
+				return execute(method, args);
+			}
+			if (name.startsWith("set") && sql != null && args != null && args.length >= 2 && args[0] instanceof Integer) {
+				remember((Integer) args[0], name.equals("setNull") ? null : args[1]);
+			} else if (name.equals("clearParameters")) {
+				Arrays.fill(parameters, null);
+			} else if (name.equals("equals")) {
+				return proxy == args[0];
+			} else if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			return forward(method, args);
+		}
+
+		private Object execute(Method method, Object[] args) throws Throwable {
+			String text = sql != null ? sql
+					: args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : OTHER_SQL;
+			Entry entry = entry(text);
+			long start = System.nanoTime();
+			Object result;
+			try {
+				result = forward(method, args);
+			} catch (Throwable e) {
+				entry.errors.increment();
+				record(entry, text, System.nanoTime() - start);
+				throw e;
+			}
+			record(entry, text, System.nanoTime() - start);
+
+			if (result instanceof ResultSet && countRows) {
+				return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+						new CountedResultSet((ResultSet) result, entry));
+			}
+			if (result instanceof Integer || result instanceof Long) {
+				entry.rows.add(((Number) result).longValue());
+			} else if (result instanceof int[]) {
+				for (int updated : (int[]) result) {
+					entry.rows.add(Math.max(0, updated));
+				}
+			} else if (result instanceof long[]) {
+				for (long updated : (long[]) result) {
+					entry.rows.add(Math.max(0, updated));
+				}
+			}
+			return result;
+		}
+
+		private void record(Entry entry, String text, long nanos) {
+			entry.record(nanos);
+			if (nanos >= slowThresholdNanos) {
+				entry.slow.increment();
+				log.warn("Slow query took " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms: "
+						+ text.replaceAll("\\s+", " ").trim()
+						+ (sql != null ? " parameters " + describeParameters() : ""));
+			}
+		}
+
+		private void remember(int index, Object value) {
+			if (index < 1 || index > 1000) {
+				return;
+			}
+			if (index > parameters.length) {
+				parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+			}
+			parameters[index - 1] = value;
+		}
+
+		// Types only, eg [1: Integer, 2: String(23 chars)]
+		private String describeParameters() {
+			StringBuilder description = new StringBuilder("[");
+			int last = parameters.length;
+			while (last > 0 && parameters[last - 1] == null) {
+				last--;
+			}
+			for (int i = 0; i < last; i++) {
+				Object value = parameters[i];
+				description.append(i == 0 ? "" : ", ").append(i + 1).append(": ");
+				if (value == null) {
+					description.append("null");
+				} else if (value instanceof String) {
+					description.append("String(").append(((String) value).length()).append(" chars)");
+				} else {
+					description.append(value.getClass().getSimpleName());
+				}
+			}
+			return description.append(']').toString();
+		}
+
+		private Object forward(Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(statement, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Counts the rows a query's caller actually reads.
+	 */
+	private static class CountedResultSet implements InvocationHandler {
+		private final ResultSet resultSet;
+		private final Entry entry;
+
+		CountedResultSet(ResultSet resultSet, Entry entry) {
+			this.resultSet = resultSet;
+			this.entry = entry;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				Object result;
+				try {
+					result = method.invoke(resultSet, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+				if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+					entry.rows.increment();
+				}
+				return result;
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.h2.tools.RunScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The SchemaMigrator brings the database schema up to date without dropping any data. Each script in
+ * resources/db/migration is applied once, in order, and recorded in the schema_version table together with a checksum
+ * of its contents. A script that has been edited after it was applied is reported as an error rather than silently
+ * re-run, so schema changes must always be shipped as a new script.
+ */
+public class SchemaMigrator {
+
+	private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+	/**
+	 * Migration scripts in the order they must be applied. Scripts are named V<version>__<description>.sql.
+	 */
+	private static final String[] MIGRATIONS = {
+			"V1__create_tables.sql",
+			"V2__message_indexes.sql",
+	};
+
+	private static final String LOCATION = "db/migration/";
+
+	private SchemaMigrator() {
+	}
+
+	/**
+	 * Applies every pending migration using a connection from the pool.
+	 */
+	public static void migrate() {
+		try (Connection connection = ConnectionUtil.getConnection()) {
+			migrate(connection);
+		} catch (SQLException e) {
+			throw new IllegalStateException("Schema migration failed.", e);
+		}
+	}
+
+	/**
+	 * Applies every pending migration on the given connection.
+	 * @return the number of migrations applied
+	 */
+	public static int migrate(Connection connection) throws SQLException {
+		try (Statement stmt = connection.createStatement()) {
+			stmt.execute("create table if not exists schema_version ("
+					+ "version int primary key, "
+					+ "description varchar(255), "
+					+ "checksum varchar(64), "
+					+ "applied_at timestamp default current_timestamp)");
+		}
+		Map<Integer, String> applied = appliedChecksums(connection);
+
+		int count = 0;
+		for (String script : MIGRATIONS) {
+			int version = Integer.parseInt(script.substring(1, script.indexOf("__")));
+			String description = script.substring(script.indexOf("__") + 2, script.length() - ".sql".length());
+			String sql = readScript(script);
+			String checksum = sha256(sql);
+
+			String appliedChecksum = applied.get(version);
+			if (appliedChecksum != null) {
+				if (!appliedChecksum.equals(checksum)) {
+					throw new IllegalStateException("Migration " + script + " has changed since it was applied.");
+				}
+				continue;
+			}
+
+			log.info("Applying schema migration " + script);
+			RunScript.execute(connection, new StringReader(sql));
+			try (PreparedStatement stmt = connection.prepareStatement(
+					"insert into schema_version (version, description, checksum) values (?, ?, ?)")) {
+				stmt.setInt(1, version);
+				stmt.setString(2, description);
+				stmt.setString(3, checksum);
+				stmt.executeUpdate();
+			}
+			count++;
+		}
+		return count;
+	}
+
+	private static Map<Integer, String> appliedChecksums(Connection connection) throws SQLException {
+		Map<Integer, String> applied = new HashMap<>();
+		try (PreparedStatement stmt = connection.prepareStatement("select version, checksum from schema_version");
+				ResultSet resultSet = stmt.executeQuery()) {
+			while (resultSet.next()) {
+				applied.put(resultSet.getInt("version"), resultSet.getString("checksum"));
+			}
+		}
+		return applied;
+	}
+
+	private static String readScript(String script) {
+		try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(LOCATION + script)) {
+			if (in == null) {
+				throw new IllegalStateException("Migration " + script + " is missing from the classpath.");
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read migration " + script, e);
+		}
+	}
+
+	private static String sha256(String text) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
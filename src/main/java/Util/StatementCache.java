@@ -0,0 +1,180 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An LRU cache of prepared statements for one pooled connection, keyed by SQL text. A cached statement is taken out
+ * of the cache while a borrower uses it and put back when the borrower closes it, so two borrowers never share a
+ * statement. The cache is only touched by the thread currently holding the connection and so needs no locking.
+ *
+ * A returned statement is reset to how it was prepared: parameters and batch are cleared, and any limit a borrower
+ * set (fetch size, max rows, query timeout, max field size, fetch direction) is put back to the JDBC default. A
+ * statement whose other settings were changed is closed rather than cached.
+ */
+class StatementCache {
+
+	/**
+	 * Pool-wide counters shared by every connection's cache.
+	 */
+	static class Counters {
+		final LongAdder hits = new LongAdder();
+		final LongAdder misses = new LongAdder();
+		final LongAdder evictions = new LongAdder();
+	}
+
+	private final Connection physical;
+	private final int maxSize;
+	private final Counters counters;
+	private final LinkedHashMap<String, PreparedStatement> statements;
+
+	StatementCache(Connection physical, int maxSize, Counters counters) {
+		this.physical = physical;
+		this.maxSize = maxSize;
+		this.counters = counters;
+		this.statements = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * @return a statement for sql, reused from the cache when possible. Closing it returns it to the cache.
+	 */
+	PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+		if (maxSize <= 0) {
+			return physical.prepareStatement(sql, autoGeneratedKeys);
+		}
+		String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : sql;
+		PreparedStatement statement = statements.remove(key);
+		if (statement == null || statement.isClosed()) {
+			counters.misses.increment();
+			statement = physical.prepareStatement(sql, autoGeneratedKeys);
+		} else {
+			counters.hits.increment();
+		}
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, new CachedStatement(key, statement));
+	}
+
+	private void giveBack(String key, PreparedStatement statement, boolean limitsChanged) {
+		try {
+			statement.clearParameters();
+			statement.clearBatch();
+			if (limitsChanged) {
+				statement.setFetchSize(0);
+				statement.setMaxRows(0);
+				statement.setQueryTimeout(0);
+				statement.setMaxFieldSize(0);
+				statement.setFetchDirection(ResultSet.FETCH_FORWARD);
+			}
+		} catch (SQLException e) {
+			closeQuietly(statement);
+			return;
+		}
+		PreparedStatement previous = statements.put(key, statement);
+		if (previous != null) {
+			closeQuietly(previous);
+		}
+		if (statements.size() > maxSize) {
+			Iterator<Map.Entry<String, PreparedStatement>> eldest = statements.entrySet().iterator();
+			closeQuietly(eldest.next().getValue());
+			eldest.remove();
+			counters.evictions.increment();
+		}
+	}
+
+	int size() {
+		return statements.size();
+	}
+
+	/**
+	 * Closes every cached statement. Called when the physical connection is discarded.
+	 */
+	void closeAll() {
+		for (PreparedStatement statement : statements.values()) {
+			closeQuietly(statement);
+		}
+		statements.clear();
+	}
+
+	private static void closeQuietly(Statement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			// the statement is being thrown away either way
+		}
+	}
+
+	private class CachedStatement implements InvocationHandler {
+		private final String key;
+		private final PreparedStatement statement;
+		private boolean closed;
+		// Set when the borrower changed a limit that giveBack resets
+		private boolean limitsChanged;
+		// Set when the borrower changed a setting that cannot be reset, so the statement must not be reused
+		private boolean uncacheable;
+
+		CachedStatement(String key, PreparedStatement statement) {
+			this.key = key;
+			this.statement = statement;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (!closed) {
+					closed = true;
+					if (uncacheable) {
+						closeQuietly(statement);
+					} else {
+						giveBack(key, statement, limitsChanged);
+					}
+				}
+				return null;
+			case "isClosed":
+				return closed || statement.isClosed();
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "setFetchSize":
+			case "setMaxRows":
+			case "setLargeMaxRows":
+			case "setQueryTimeout":
+			case "setMaxFieldSize":
+			case "setFetchDirection":
+				limitsChanged = true;
+				return forward(method, args);
+			case "setEscapeProcessing":
+			case "setCursorName":
+			case "setPoolable":
+			case "closeOnCompletion":
+				uncacheable = true;
+				return forward(method, args);
+			default:
+				return forward(method, args);
+			}
+		}
+
+		private Object forward(Method method, Object[] args) throws Throwable {
+			if (closed) {
+				throw new SQLException("Statement has already been closed.");
+			}
+			try {
+				return method.invoke(statement, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package Util;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks for an unbounded set of int keys in a fixed amount of memory. Keys are hashed onto a table of locks, so two
+ * keys may share one; that only costs some needless waiting. ReentrantLock rather than synchronized, so that a virtual
+ * thread waiting for one, or holding one across a query, does not pin its carrier.
+ */
+public class StripedLocks {
+
+	private final ReentrantLock[] locks;
+	private final int mask;
+
+	/**
+	 * @param stripes the number of locks, rounded up to a power of two
+	 */
+	public StripedLocks(int stripes) {
+		if (stripes < 1 || stripes > (1 << 30)) {
+			throw new IllegalArgumentException("stripes must be from 1 to 2^30.");
+		}
+		int size = Integer.highestOneBit(stripes);
+		if (size < stripes) {
+			size <<= 1;
+		}
+		this.locks = new ReentrantLock[size];
+		for (int i = 0; i < size; i++) {
+			locks[i] = new ReentrantLock();
+		}
+		this.mask = size - 1;
+	}
+
+	public Lock get(int key) {
+		return locks[slot(key)];
+	}
+
+	// Spread sequential ids across the table
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
@@ -0,0 +1,48 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version counters for an unbounded set of int keys in a fixed amount of memory. Keys are hashed onto a table of
+ * counters, and bumping a key bumps every key that shares its slot. A key's version therefore changes whenever the
+ * key is written, and sometimes when it is not; it never stays the same across a write. That is the guarantee a
+ * validator such as an ETag needs, and the occasional spurious change only costs a refetch.
+ */
+public class StripedVersions {
+
+	private final AtomicLongArray versions;
+	private final int mask;
+
+	/**
+	 * @param stripes the number of counters, rounded up to a power of two
+	 */
+	public StripedVersions(int stripes) {
+		if (stripes < 1 || stripes > (1 << 30)) {
+			throw new IllegalArgumentException("stripes must be from 1 to 2^30.");
+		}
+		int size = Integer.highestOneBit(stripes);
+		if (size < stripes) {
+			size <<= 1;
+		}
+		this.versions = new AtomicLongArray(size);
+		this.mask = size - 1;
+	}
+
+	public long get(int key) {
+		return versions.get(slot(key));
+	}
+
+	/**
+	 * Call after the write to key is visible to readers, so that a reader who sees the new version also sees the
+	 * new data.
+	 */
+	public void bump(int key) {
+		versions.incrementAndGet(slot(key));
+	}
+
+	// Spread sequential ids across the table
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
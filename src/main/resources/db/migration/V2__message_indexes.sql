@@ -0,0 +1,4 @@
+-- Serves GET /accounts/{account_id}/messages, including keyset pages that seek on message_id within one account.
+create index if not exists message_posted_by_message_id_idx on message (posted_by, message_id);
+-- Serves range queries and ordering on the time a message was posted.
+create index if not exists message_time_posted_epoch_idx on message (time_posted_epoch);
@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConditionalGetTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1, repeating it with the returned ETag in
+     * If-None-Match, then updating the message and repeating it again
+     *
+     * Expected Response:
+     *  Status Code: 200 with an ETag, then 304 while unchanged, then 200 with a new ETag after the update
+     */
+    @Test
+    public void messageNotModifiedUntilUpdated() throws IOException, InterruptedException {
+        HttpResponse<String> first = getMessage(1, null);
+        Assert.assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertNotNull(etag);
+
+        HttpResponse<String> unchanged = getMessage(1, etag);
+        Assert.assertEquals(304, unchanged.statusCode());
+        Assert.assertEquals("", unchanged.body());
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> changed = getMessage(1, etag);
+        Assert.assertEquals(200, changed.statusCode());
+        Assert.assertNotEquals(etag, changed.headers().firstValue("ETag").orElse(null));
+        Assert.assertTrue(changed.body().contains("updated message"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/9999, for a message that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: empty, with no ETag, so that the empty body is not cached as the message's current version
+     */
+    @Test
+    public void missingMessageHasNoETag() throws IOException, InterruptedException {
+        HttpResponse<String> response = getMessage(9999, null);
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("", response.body());
+        Assert.assertFalse(response.headers().firstValue("ETag").isPresent());
+    }
+
+    private HttpResponse<String> getMessage(int messageId, String ifNoneMatch)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
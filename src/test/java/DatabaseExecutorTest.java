@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+import io.javalin.util.LoomUtil;
+
+/**
+ * How server.threads and db.executor.enabled together decide whether database handlers run on the database executor.
+ */
+public class DatabaseExecutorTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database and create a new webClient. Each test starts the app itself, once it has
+     * chosen the thread settings.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        if (app != null) {
+            app.stop();
+        }
+        System.clearProperty("server.threads");
+        System.clearProperty("db.executor.enabled");
+    }
+
+    /**
+     * With server.threads=platform and db.executor.enabled=auto, sending an http request to GET
+     * localhost:8080/messages/1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  The handler ran on the database executor
+     */
+    @Test
+    public void platformThreadsUseExecutorByDefault() throws IOException, InterruptedException {
+        startApp("platform", "auto");
+        Assert.assertTrue(ranOnExecutor());
+    }
+
+    /**
+     * With server.threads=virtual and db.executor.enabled=auto, sending an http request to GET
+     * localhost:8080/messages/1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  The handler ran inline on its virtual thread, or on the database executor where the JDK has no virtual threads
+     *  and requests fall back to platform threads
+     */
+    @Test
+    public void virtualThreadsRunInlineByDefault() throws IOException, InterruptedException {
+        startApp("virtual", "auto");
+        Assert.assertEquals(!LoomUtil.INSTANCE.getLoomAvailable(), ranOnExecutor());
+    }
+
+    /**
+     * With server.threads=virtual and db.executor.enabled=true, sending an http request to GET
+     * localhost:8080/messages/1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  The handler ran on the database executor
+     */
+    @Test
+    public void executorCanBeForcedOn() throws IOException, InterruptedException {
+        startApp("virtual", "true");
+        Assert.assertTrue(ranOnExecutor());
+    }
+
+    /**
+     * With server.threads=platform and db.executor.enabled=false, sending an http request to GET
+     * localhost:8080/messages/1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  The handler ran inline on the Jetty thread
+     */
+    @Test
+    public void executorCanBeTurnedOff() throws IOException, InterruptedException {
+        startApp("platform", "false");
+        Assert.assertFalse(ranOnExecutor());
+    }
+
+    /**
+     * With every pooled connection borrowed, sending an http request to GET localhost:8080/messages?limit=10
+     *
+     * Expected Response:
+     *  Status Code: 503 with Retry-After, once the wait for a connection times out
+     */
+    @Test
+    public void exhaustedPoolAnswers503() throws IOException, InterruptedException, SQLException {
+        startApp("platform", "auto");
+        List<Connection> borrowed = new ArrayList<>();
+        try {
+            for (int i = 0; i < ConnectionUtil.getPoolStats().getMaxSize(); i++) {
+                borrowed.add(ConnectionUtil.getConnection());
+            }
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages?limit=10"))
+                    .build();
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(503, response.statusCode());
+            Assert.assertTrue(response.headers().firstValue("Retry-After").isPresent());
+        } finally {
+            for (Connection connection : borrowed) {
+                connection.close();
+            }
+        }
+    }
+
+    private void startApp(String threads, String executor) throws InterruptedException {
+        System.setProperty("server.threads", threads);
+        System.setProperty("db.executor.enabled", executor);
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    // Whether a GET of message 1 was run by the database executor, judged by its count of completed tasks, which
+    // the executor updates just after the task returns and so possibly after the response has arrived
+    private boolean ranOnExecutor() throws IOException, InterruptedException {
+        long before = completedTasks();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        for (int i = 0; i < 20 && completedTasks() == before; i++) {
+            Thread.sleep(25);
+        }
+        return completedTasks() > before;
+    }
+
+    private long completedTasks() {
+        return ((Number) ConnectionUtil.getDatabaseExecutor().getMetrics().get("completed")).longValue();
+    }
+}
@@ -3,7 +3,8 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-
+import java.sql.SQLException;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -14,6 +15,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import Controller.SocialMediaController;
 import Model.Message;
+import Service.MessageService;
 import Util.ConnectionUtil;
 import io.javalin.Javalin;
 
@@ -87,5 +89,22 @@ public class DeleteMessageByMessageIdTest {
         Assert.assertEquals(200, status);
         Assert.assertTrue(response.body().toString().isEmpty());
     }
-    
+
+    /**
+     * Reading account 1's timeline through a MessageService, deleting message 1, and reading the timeline again
+     *
+     * Expected Response:
+     *  The second read is served from the cache, which no longer holds the message
+     */
+    @Test
+    public void deleteKeepsTimelineCached() throws SQLException {
+        MessageService messageService = new MessageService();
+        messageService.getMessagesByUserId(1);
+        messageService.deleteMessageById(1);
+
+        long hits = messageService.getTimelineCacheMetrics().getHitCount();
+        List<Message> timeline = messageService.getMessagesByUserId(1);
+        Assert.assertEquals(hits + 1, messageService.getTimelineCacheMetrics().getHitCount());
+        Assert.assertTrue(timeline.isEmpty());
+    }
 }
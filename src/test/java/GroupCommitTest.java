@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessageBatchResult;
+import Service.GroupCommitWriter;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class GroupCommitTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app with group commit enabled, and create a new
+     * webClient for interacting locally on the web. The flush interval is long enough for concurrent requests to
+     * share a batch.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("messages.groupCommit.enabled", "true");
+        System.setProperty("messages.groupCommit.flushIntervalMillis", "50");
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("messages.groupCommit.enabled");
+        System.clearProperty("messages.groupCommit.flushIntervalMillis");
+    }
+
+    /**
+     * Sending concurrent http requests to POST localhost:8080/messages, one of them from a user that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 200 with the created message for each valid request, and 400 with an empty body for the other
+     */
+    @Test
+    public void concurrentCreatesGetTheirOwnResults() throws InterruptedException, ExecutionException {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int postedBy = i == 3 ? 9999 : 1;
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"message_text\": \"grouped " + i + "\", "
+                            + "\"posted_by\": " + postedBy + ", \"time_posted_epoch\": 1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            responses.add(webClient.sendAsync(postMessageRequest, HttpResponse.BodyHandlers.ofString()));
+        }
+
+        for (int i = 0; i < responses.size(); i++) {
+            HttpResponse<String> response = responses.get(i).get();
+            if (i == 3) {
+                Assert.assertEquals(400, response.statusCode());
+                Assert.assertEquals("", response.body());
+            } else {
+                Assert.assertEquals(200, response.statusCode());
+                Assert.assertTrue(response.body().contains("grouped " + i));
+            }
+        }
+    }
+
+    /**
+     * Writing three messages through a GroupCommitWriter whose batch writer fails any batch that holds the message
+     * from user 9999 with a constraint violation
+     *
+     * Expected Response:
+     *  The two good messages are written when their batch is retried one message at a time, and only the bad one
+     *  fails
+     */
+    @Test
+    public void failedBatchRetriedOneMessageAtATime() throws InterruptedException {
+        GroupCommitWriter writer = new GroupCommitWriter(messages -> {
+            List<MessageBatchResult> results = new ArrayList<>();
+            for (Message message : messages) {
+                if (message.getPosted_by() == 9999) {
+                    throw new SQLIntegrityConstraintViolationException("Bad message in batch.");
+                }
+                results.add(MessageBatchResult.created(results.size(), message));
+            }
+            return results;
+        }, 100, 200, 1000);
+
+        CompletableFuture<MessageBatchResult> first = writer.write(new Message(1, "first", 1669947792));
+        CompletableFuture<MessageBatchResult> bad = writer.write(new Message(9999, "bad", 1669947792));
+        CompletableFuture<MessageBatchResult> last = writer.write(new Message(1, "last", 1669947792));
+
+        Assert.assertEquals("first", first.join().getMessage().getMessage_text());
+        Assert.assertEquals("last", last.join().getMessage().getMessage_text());
+        try {
+            bad.get();
+            Assert.fail("The bad message should have failed.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLIntegrityConstraintViolationException);
+        }
+        Assert.assertEquals(1, writer.getStats().getFailedBatchCount());
+        Assert.assertEquals(3, writer.getStats().getRetriedMessageCount());
+        writer.close();
+    }
+
+    /**
+     * Writing two messages through a GroupCommitWriter whose batch writer cannot get a connection
+     *
+     * Expected Response:
+     *  Both messages fail with the batch's exception, without being retried one at a time
+     */
+    @Test
+    public void transientFailureFailsWholeBatch() throws InterruptedException {
+        GroupCommitWriter writer = new GroupCommitWriter(messages -> {
+            throw new SQLTransientConnectionException("Timed out waiting for a connection.");
+        }, 100, 200, 1000);
+
+        CompletableFuture<MessageBatchResult> first = writer.write(new Message(1, "first", 1669947792));
+        CompletableFuture<MessageBatchResult> second = writer.write(new Message(1, "second", 1669947792));
+
+        for (CompletableFuture<MessageBatchResult> write : List.of(first, second)) {
+            try {
+                write.get();
+                Assert.fail("The write should have failed.");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof SQLTransientConnectionException);
+            }
+        }
+        Assert.assertEquals(0, writer.getStats().getRetriedMessageCount());
+        writer.close();
+    }
+
+    /**
+     * Writing through a GroupCommitWriter with room to queue one message, while its batch writer is stuck on an
+     * earlier batch
+     *
+     * Expected Response:
+     *  The write that finds the queue full is refused at once with RejectedExecutionException, and the queued one is
+     *  written once the writer is free again
+     */
+    @Test
+    public void fullQueueRefusesWrites() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        GroupCommitWriter writer = new GroupCommitWriter(messages -> {
+            writing.countDown();
+            release.join();
+            List<MessageBatchResult> results = new ArrayList<>();
+            for (Message message : messages) {
+                results.add(MessageBatchResult.created(results.size(), message));
+            }
+            return results;
+        }, 100, 0, 1);
+
+        CompletableFuture<MessageBatchResult> first = writer.write(new Message(1, "first", 1669947792));
+        writing.await();
+        CompletableFuture<MessageBatchResult> queued = writer.write(new Message(1, "queued", 1669947792));
+        CompletableFuture<MessageBatchResult> refused = writer.write(new Message(1, "refused", 1669947792));
+
+        try {
+            refused.getNow(null);
+            Assert.fail("The write should have been refused.");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        release.complete(null);
+        Assert.assertEquals("first", first.join().getMessage().getMessage_text());
+        Assert.assertEquals("queued", queued.join().getMessage().getMessage_text());
+        Assert.assertEquals(1, writer.getStats().getRejectedCount());
+        writer.close();
+    }
+
+    /**
+     * Writing two messages through a GroupCommitWriter with a long flush interval, and closing it before the interval
+     * is up
+     *
+     * Expected Response:
+     *  close() writes both queued messages before returning, and later writes are refused
+     */
+    @Test
+    public void closeWritesQueuedMessages() throws InterruptedException {
+        GroupCommitWriter writer = new GroupCommitWriter(messages -> {
+            List<MessageBatchResult> results = new ArrayList<>();
+            for (Message message : messages) {
+                results.add(MessageBatchResult.created(results.size(), message));
+            }
+            return results;
+        }, 100, 60000, 1000);
+
+        CompletableFuture<MessageBatchResult> first = writer.write(new Message(1, "first", 1669947792));
+        CompletableFuture<MessageBatchResult> second = writer.write(new Message(1, "second", 1669947792));
+        writer.close();
+
+        Assert.assertEquals("first", first.getNow(null).getMessage().getMessage_text());
+        Assert.assertEquals("second", second.getNow(null).getMessage().getMessage_text());
+        try {
+            writer.write(new Message(1, "late", 1669947792)).getNow(null);
+            Assert.fail("A write after close should have been refused.");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MetricsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/1, GET localhost:8080/messages/9999 and an unknown path,
+     * then to GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the requests counted under their route template and status, with a latency histogram, and the
+     *  connection pool gauges
+     */
+    @Test
+    public void requestsCountedByRouteTemplate() throws IOException, InterruptedException {
+        get("/messages/1");
+        get("/messages/9999");
+        get("/no/such/path");
+
+        HttpResponse<String> response = get("/metrics");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        String metrics = response.body();
+        Assert.assertTrue(metrics.contains(
+                "http_requests_total{method=\"GET\",route=\"/messages/{message_id}\",status=\"200\"} 2\n"));
+        Assert.assertTrue(metrics.contains(
+                "http_requests_total{method=\"GET\",route=\"unmatched\",status=\"404\"} 1\n"));
+        Assert.assertTrue(metrics.contains(
+                "http_request_duration_seconds_bucket{method=\"GET\",route=\"/messages/{message_id}\",le=\"+Inf\"} 2\n"));
+        Assert.assertTrue(metrics.contains(
+                "http_request_duration_seconds_count{method=\"GET\",route=\"/messages/{message_id}\"} 2\n"));
+        Assert.assertTrue(metrics.contains("db_pool_max_connections "));
+        Assert.assertTrue(metrics.contains("jvm_threads_current "));
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
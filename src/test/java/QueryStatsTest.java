@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class QueryStatsTest {
+    private static final String ADMIN_TOKEN = "test-admin-token";
+
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("admin.token", ADMIN_TOKEN);
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("admin.token");
+    }
+
+    /**
+     * Resetting the statistics with DELETE localhost:8080/admin/queries, logging in twice as a seeded user, then
+     * sending an http request to GET localhost:8080/admin/queries
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the login query with a count of 2, and nothing run before the reset. Rows read are not counted
+     *  unless db.queryStats.countRows is set, so they show as 0.
+     */
+    @Test
+    public void loginQueryCounted() throws IOException, InterruptedException {
+        HttpRequest resetRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/queries"))
+                .header("X-Admin-Token", ADMIN_TOKEN)
+                .DELETE()
+                .build();
+        Assert.assertEquals(204, webClient.send(resetRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        for (int i = 0; i < 2; i++) {
+            HttpRequest loginRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/login"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{" +
+                            "\"username\": \"testuser1\", " +
+                            "\"password\": \"password\" }"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            Assert.assertEquals(200, webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/queries"))
+                .header("X-Admin-Token", ADMIN_TOKEN)
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        List<Map<String, Object>> queries = objectMapper.readValue(response.body(),
+                new TypeReference<List<Map<String, Object>>>(){});
+        Assert.assertEquals(1, queries.size());
+        Map<String, Object> login = queries.get(0);
+        Assert.assertEquals("SELECT * FROM account WHERE username = ? AND password = ?", login.get("sql"));
+        Assert.assertEquals(2, ((Number) login.get("count")).intValue());
+        Assert.assertEquals(0, ((Number) login.get("rows")).intValue());
+        Assert.assertEquals(0, ((Number) login.get("errorCount")).intValue());
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/admin/stats and DELETE localhost:8080/admin/queries without the
+     * admin token, and with a wrong one
+     *
+     * Expected Response:
+     *  Status Code: 401
+     */
+    @Test
+    public void adminRoutesRequireToken() throws IOException, InterruptedException {
+        HttpRequest statsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/stats"))
+                .build();
+        Assert.assertEquals(401, webClient.send(statsRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest resetRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/admin/queries"))
+                .header("X-Admin-Token", "wrong")
+                .DELETE()
+                .build();
+        Assert.assertEquals(401, webClient.send(resetRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+}
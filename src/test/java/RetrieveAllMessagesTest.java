@@ -18,7 +18,9 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import Controller.SocialMediaController;
+import DAO.MessageDAO;
 import Model.Message;
+import Service.MessageService;
 import Util.ConnectionUtil;
 import io.javalin.Javalin;
 
@@ -99,6 +101,36 @@ public class RetrieveAllMessagesTest {
 
 
 
+    /**
+     * Adding four messages, then listing every message through a MessageService that reads two rows per query
+     *
+     * Expected Response:
+     *  All five messages in message_id order, with no pooled connection held while each one is handled
+     */
+    @Test
+    public void forEachMessageReadsInChunks() throws SQLException {
+        List<Message> added = new ArrayList<>();
+        for (int i = 2; i <= 5; i++) {
+            added.add(new Message(1, "test message " + i, 1669947792));
+        }
+        new MessageDAO().createMessages(added);
+
+        System.setProperty("messages.stream.chunkSize", "2");
+        MessageService messageService;
+        try {
+            messageService = new MessageService();
+        } finally {
+            System.clearProperty("messages.stream.chunkSize");
+        }
+        int activeBefore = ConnectionUtil.getPoolStats().getActive();
+        List<Integer> messageIds = new ArrayList<>();
+        messageService.forEachMessage(message -> {
+            Assert.assertEquals(activeBefore, ConnectionUtil.getPoolStats().getActive());
+            messageIds.add(message.getMessage_id());
+        });
+        Assert.assertEquals(List.of(1, 2, 3, 4, 5), messageIds);
+    }
+
     private void removeInitialMessage(){
         try {
                 Connection conn = ConnectionUtil.getConnection();
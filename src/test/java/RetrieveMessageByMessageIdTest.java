@@ -3,6 +3,8 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -13,6 +15,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import Controller.SocialMediaController;
 import Model.Message;
+import Service.MessageService;
 import Util.ConnectionUtil;
 import io.javalin.Javalin;
 
@@ -87,4 +90,27 @@ public class RetrieveMessageByMessageIdTest {
     }
 
 
+    /**
+     * Modifying the messages returned by MessageService, then reading them again through the same service
+     *
+     * Expected Response:
+     *  The second reads return the stored message unchanged: the cached copies were not modified
+     */
+    @Test
+    public void modifyingReturnedMessagesLeavesCacheIntact() throws SQLException {
+        MessageService messageService = new MessageService();
+        try {
+            messageService.getMessageById(1).setMessage_text("changed by caller");
+            List<Message> timeline = messageService.getMessagesByUserId(1);
+            timeline.get(0).setMessage_text("changed by caller");
+
+            Message expectedResult = new Message(1, 1, "test message 1", 1669947792);
+            Assert.assertEquals(expectedResult, messageService.getMessageById(1));
+            Assert.assertEquals(List.of(expectedResult), messageService.getMessagesByUserId(1));
+            Assert.assertEquals(List.of(expectedResult),
+                    messageService.getMessagesByUserIdPage(1, 0, 10).getMessages());
+        } finally {
+            messageService.close();
+        }
+    }
 }
@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import Model.Message;
+import Model.SearchResults;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/search?q=MESSAGE and ?q=mess*
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the seeded message, matched by the whole word regardless of case and by its prefix
+     */
+    @Test
+    public void searchByTermAndPrefix() throws IOException, InterruptedException {
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+
+        SearchResults term = search("q=MESSAGE");
+        Assert.assertEquals(expected, term.getMessages());
+        Assert.assertEquals(1, term.getTotal());
+        Assert.assertNull(term.getNext_offset());
+
+        Assert.assertEquals(expected, search("q=mess*").getMessages());
+        Assert.assertEquals(0, search("q=mess").getTotal());
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/search?q=apple&limit=1, then following next_offset
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message using the word most often first, then the other one, with the total on each page
+     */
+    @Test
+    public void searchRanksAndPaginates() throws IOException, InterruptedException {
+        postMessage("apple apple banana");
+        postMessage("apple cherry");
+
+        SearchResults firstPage = search("q=apple&limit=1");
+        List<Message> expectedFirst = new ArrayList<>();
+        expectedFirst.add(new Message(2, 1, "apple apple banana", 1669947792));
+        Assert.assertEquals(expectedFirst, firstPage.getMessages());
+        Assert.assertEquals(2, firstPage.getTotal());
+        Assert.assertEquals(Integer.valueOf(1), firstPage.getNext_offset());
+
+        SearchResults secondPage = search("q=apple&limit=1&offset=1");
+        List<Message> expectedSecond = new ArrayList<>();
+        expectedSecond.add(new Message(3, 1, "apple cherry", 1669947792));
+        Assert.assertEquals(expectedSecond, secondPage.getMessages());
+        Assert.assertNull(secondPage.getNext_offset());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=apple%20cherry
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the message containing both words
+     */
+    @Test
+    public void searchRequiresEveryTerm() throws IOException, InterruptedException {
+        postMessage("apple apple banana");
+        postMessage("apple cherry");
+
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(3, 1, "apple cherry", 1669947792));
+        Assert.assertEquals(expected, search("q=apple%20cherry").getMessages());
+    }
+
+    /**
+     * Sending an http request to PATCH localhost:8080/messages/1, then DELETE localhost:8080/messages/1, searching
+     * after each
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message found by its new text and no longer by its old text, then not found at all
+     */
+    @Test
+    public void searchFollowsUpdateAndDelete() throws IOException, InterruptedException {
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated text\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        Assert.assertEquals(0, search("q=message").getTotal());
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "updated text", 1669947792));
+        Assert.assertEquals(expected, search("q=updated").getMessages());
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        Assert.assertEquals(0, search("q=updated").getTotal());
+    }
+
+    /**
+     * Posting a message, then sending many concurrent PATCH requests for it with different texts together with a
+     * DELETE, and searching by the words of every text; repeated for several messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: if the message survived, only the text committed last is found, as stored in the database;
+     *  otherwise none are
+     */
+    @Test
+    public void concurrentUpdatesAndDeleteLeaveIndexCurrent() throws IOException, InterruptedException, SQLException {
+        for (int round = 0; round < 5; round++) {
+            int messageId = postMessage("round " + round);
+            List<CompletableFuture<HttpResponse<String>>> writes = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                HttpRequest.Builder request = HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:8080/messages/" + messageId));
+                if (i == 10 && round % 2 == 1) {
+                    request.DELETE();
+                } else {
+                    request.method("PATCH", HttpRequest.BodyPublishers.ofString(
+                            "{\"message_text\": \"r" + round + "u" + i + "\"}"));
+                }
+                writes.add(webClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> write : writes) {
+                write.join();
+            }
+
+            Message committed = new MessageDAO().getMessageById(messageId);
+            if (committed == null) {
+                Assert.assertEquals(0, search("q=r" + round + "u*").getTotal());
+            } else {
+                Assert.assertEquals(1, search("q=r" + round + "u*").getTotal());
+                Assert.assertEquals(1, search("q=" + committed.getMessage_text()).getTotal());
+            }
+        }
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/search without q, with q=%21%21 and with offset=-1
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchInvalidParameters() throws IOException, InterruptedException {
+        Assert.assertEquals(400, get("http://localhost:8080/messages/search").statusCode());
+        Assert.assertEquals(400, get("http://localhost:8080/messages/search?q=%21%21").statusCode());
+        Assert.assertEquals(400, get("http://localhost:8080/messages/search?q=test&offset=-1").statusCode());
+    }
+
+    private SearchResults search(String query) throws IOException, InterruptedException {
+        HttpResponse<String> response = get("http://localhost:8080/messages/search?" + query);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), SearchResults.class);
+    }
+
+    private HttpResponse<String> get(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(uri)).build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private int postMessage(String text) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class).getMessage_id();
+    }
+}
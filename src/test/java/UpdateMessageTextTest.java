@@ -3,16 +3,23 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import Controller.SocialMediaController;
+import DAO.MessageDAO;
 import Model.Message;
+import Service.MessageService;
 import Util.ConnectionUtil;
 import io.javalin.Javalin;
 
@@ -139,4 +146,63 @@ public class UpdateMessageTextTest {
         Assert.assertEquals(400, status);        
         Assert.assertTrue(response.body().toString().isEmpty());
     }
+
+
+    /**
+     * Caching account 1's timeline with GET localhost:8080/accounts/1/messages, then sending many concurrent PATCH
+     * localhost:8080/messages/1 requests with different texts, and reading the timeline again
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the timeline shows whichever text was committed last, as stored in the database
+     */
+    @Test
+    public void concurrentUpdatesLeaveTimelineCurrent() throws IOException, InterruptedException, SQLException {
+        for (int round = 0; round < 5; round++) {
+            getTimeline();
+            List<CompletableFuture<HttpResponse<String>>> updates = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                HttpRequest request = HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:8080/messages/1"))
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{"+
+                                "\"message_text\": \"round " + round + " update " + i + "\" }"))
+                        .header("Content-Type", "application/json")
+                        .build();
+                updates.add(webClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> update : updates) {
+                Assert.assertEquals(200, update.join().statusCode());
+            }
+
+            String committed = new MessageDAO().getMessageById(1).getMessage_text();
+            Assert.assertEquals(committed, getTimeline().get(0).getMessage_text());
+        }
+    }
+
+    /**
+     * Reading account 1's timeline through a MessageService, updating message 1, and reading the timeline again
+     *
+     * Expected Response:
+     *  The second read is served from the cache, which shows the new text
+     */
+    @Test
+    public void updateKeepsTimelineCached() throws SQLException {
+        MessageService messageService = new MessageService();
+        messageService.getMessagesByUserId(1);
+        messageService.updateMessageText(1, "updated in place");
+
+        long hits = messageService.getTimelineCacheMetrics().getHitCount();
+        List<Message> timeline = messageService.getMessagesByUserId(1);
+        Assert.assertEquals(hits + 1, messageService.getTimelineCacheMetrics().getHitCount());
+        Assert.assertEquals("updated in place", timeline.get(0).getMessage_text());
+    }
+
+    private List<Message> getTimeline() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
 }